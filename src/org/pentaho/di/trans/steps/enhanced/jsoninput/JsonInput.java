@@ -25,6 +25,7 @@ package org.pentaho.di.trans.steps.enhanced.jsoninput;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.BitSet;
+import java.util.List;
 
 import org.apache.commons.lang.NotImplementedException;
 import org.apache.commons.vfs2.FileObject;
@@ -37,6 +38,7 @@ import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.fileinput.FileInputList;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.ValueMetaInterface;
@@ -48,9 +50,18 @@ import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.JsonInputMeta.FilePartitioning;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.CachingJsonReader;
 import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.FastJsonReader;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.FilePartitioner;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.FieldParserPool;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.InputPrefetcher;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.JsonProviders;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.JsonReaderException;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.LineDelimitedJsonReader;
 import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.RowOutputConverter;
 import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.InputsReader;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.StreamingJsonReader;
 import org.pentaho.di.trans.steps.fileinput.BaseFileInputStep;
 import org.pentaho.di.trans.steps.fileinput.IBaseFileInputReader;
 
@@ -66,6 +77,7 @@ public class JsonInput extends BaseFileInputStep<JsonInputMeta, JsonInputData> i
     private static Class<?> PKG = JsonInputMeta.class; // for i18n purposes, needed by Translator2!!
 
     private RowOutputConverter rowOutputConverter;
+    private InputErrorHandler inputErrorHandler;
 
     public JsonInput(StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta, Trans trans) {
         super(stepMeta, stepDataInterface, copyNr, transMeta, trans);
@@ -148,6 +160,9 @@ public class JsonInput extends BaseFileInputStep<JsonInputMeta, JsonInputData> i
                 logError(errMsg);
                 inputError(errMsg);
             }
+            if (!meta.inputFiles.acceptingFilenames) {
+                shareFilesAmongCopies();
+            }
         } else {
             data.readrow = getRow();
             data.inputRowMeta = getInputRowMeta();
@@ -188,11 +203,59 @@ public class JsonInput extends BaseFileInputStep<JsonInputMeta, JsonInputData> i
 
         // Create convert meta-data objects that will contain Date & Number formatters
         data.convertRowMeta = data.outputRowMeta.cloneToType(ValueMetaInterface.TYPE_STRING);
-        data.inputs = new InputsReader(this, meta, data, new InputErrorHandler()).iterator();
+        inputErrorHandler = new InputErrorHandler();
+        InputsReader inputsReader = new InputsReader(this, meta, data, inputErrorHandler);
+        if (meta.isInFields() && !meta.getIsAFile()) {
+            // the values are parsed as they are, with no charset involved
+            data.fieldValues = inputsReader.getFieldValues();
+        } else {
+            data.inputs = inputsReader.iterator();
+        }
+        if (meta.getPrefetchFiles() > 0 && !meta.isInFields() && !meta.inputFiles.acceptingFilenames) {
+            // the file list is known upfront, next files can be parsed while rows are being read
+            data.prefetcher = new InputPrefetcher(data.files.getFiles().listIterator(data.currentFileIndex),
+                    data.reader, meta.getPrefetchFiles(), data.rangeNr, data.nrRanges, meta.isMemoryMappedFiles(),
+                    getStepname() + " - prefetch");
+        }
+        if (meta.getParseWorkers() > 0 && meta.isInFields() && !meta.getIsAFile() && data.inputRowMeta != null) {
+            // values are parsed in incoming order, upstream rows are read ahead
+            data.fieldParsers = new FieldParserPool(inputsReader.getRowIterator(), data.indexSourceField,
+                    data.reader, meta.getParseWorkers(), getStepname() + " - parse");
+        }
         // data.recordnr = 0;
         data.readerRowSet = new QueueRowSet();
         data.readerRowSet.setDone();
-        this.rowOutputConverter = new RowOutputConverter(getLogChannel());
+        this.rowOutputConverter = new RowOutputConverter(data);
+    }
+
+    /**
+     * keeps only the files or byte ranges this step copy should read, if the file list is shared among copies
+     */
+    private void shareFilesAmongCopies() {
+        int nrCopies = getUniqueStepCountAcrossSlaves();
+        int copyNr = getUniqueStepNrAcrossSlaves();
+        if (meta.getFilePartitioning() == FilePartitioning.BYTE_RANGES && meta.isLineDelimited() && nrCopies > 1) {
+            // each line is a record of its own: every copy reads its range of every file
+            data.rangeNr = copyNr;
+            data.nrRanges = nrCopies;
+            if (isDetailed()) {
+                logDetailed(BaseMessages.getString(PKG, "JsonInput.Log.RangesShare", copyNr, nrCopies));
+            }
+            return;
+        }
+        List<FileObject> files = data.files.getFiles();
+        List<FileObject> share = FilePartitioner.getFiles(files, meta.getFilePartitioning(), copyNr, nrCopies);
+        if (share != files) {
+            FileInputList shareList = new FileInputList();
+            for (FileObject file : share) {
+                shareList.addFile(file);
+            }
+            data.files = shareList;
+            if (isDetailed()) {
+                logDetailed(
+                        BaseMessages.getString(PKG, "JsonInput.Log.FilesShare", copyNr, share.size(), files.size()));
+            }
+        }
     }
 
     private void addFileToResultFilesname(FileObject file) {
@@ -258,6 +321,20 @@ public class JsonInput extends BaseFileInputStep<JsonInputMeta, JsonInputData> i
         return false;
     }
 
+    private boolean parseNextValueToRowSet(String value) {
+        if (value != null) {
+            try {
+                data.readerRowSet = data.reader.parse(value);
+                return true;
+            } catch (KettleException ke) {
+                logInputError(ke);
+            } catch (Exception e) {
+                logInputError(e);
+            }
+        }
+        return false;
+    }
+
     private void logInputError(KettleException e) {
         logError(e.getLocalizedMessage(), e);
         inputError(e.getLocalizedMessage());
@@ -310,18 +387,26 @@ public class JsonInput extends BaseFileInputStep<JsonInputMeta, JsonInputData> i
      */
     private Object[] getOneOutputRow() throws KettleException {
         Object[] rawReaderRow = null;
-        while ((rawReaderRow = data.readerRowSet.getRow()) == null) {
-            if (data.inputs.hasNext() && data.readerRowSet.isDone()) {
-                try (InputStream nextIn = data.inputs.next()) {
-                    boolean parsed = parseNextInputToRowSet(nextIn);
-                    if (parsed && shouldOutputEmpty()) {
-                        return buildBaseOutputRow();
-                    }
-                } catch (IOException e) {
-                    logError(BaseMessages.getString(PKG, "JsonInput.Log.UnexpectedError", e.toString()), e);
-                    incrementErrors();
+        while ((rawReaderRow = getReaderRow()) == null) {
+            if (hasMoreInputs() && data.readerRowSet.isDone()) {
+                // the previous input can only be released once all its rows were pulled
+                closeCurrentInput();
+                boolean parsed;
+                if (data.prefetcher != null) {
+                    parsed = takePrefetchedInput();
+                } else if (data.fieldParsers != null) {
+                    parsed = takeParsedField();
+                } else if (data.fieldValues != null) {
+                    parsed = parseNextValueToRowSet(data.fieldValues.next());
+                } else {
+                    data.currentInput = data.inputs.next();
+                    parsed = parseNextInputToRowSet(data.currentInput);
+                }
+                if (parsed && shouldOutputEmpty()) {
+                    return buildBaseOutputRow();
                 }
             } else {
+                closeCurrentInput();
                 if (isDetailed()) {
                     logDetailed(BaseMessages.getString(PKG, "JsonInput.Log.FinishedProcessing"));
                 }
@@ -333,6 +418,99 @@ public class JsonInput extends BaseFileInputStep<JsonInputMeta, JsonInputData> i
         return outputRow;
     }
 
+    private boolean hasMoreInputs() {
+        if (data.prefetcher != null) {
+            return data.prefetcher.hasNext();
+        } else if (data.fieldParsers != null) {
+            return data.fieldParsers.hasNext();
+        } else if (data.fieldValues != null) {
+            return data.fieldValues.hasNext();
+        }
+        return data.inputs.hasNext();
+    }
+
+    /**
+     * moves on to the next incoming row, as parsed by the workers; same errors as when parsed on the step thread
+     */
+    private boolean takeParsedField() {
+        try {
+            FieldParserPool.ParsedField next = data.fieldParsers.next();
+            data.readrow = next.getRow();
+            RowSet rowSet = next.getRowSet();
+            if (rowSet != null) {
+                data.readerRowSet = rowSet;
+                return true;
+            }
+        } catch (KettleException ke) {
+            logInputError(ke);
+        } catch (Exception e) {
+            logInputError(e);
+        }
+        return false;
+    }
+
+    /**
+     * moves on to the next file of the list, as parsed in the background; same checks and errors as when it's read
+     * through the inputs iterator
+     */
+    private boolean takePrefetchedInput() {
+        InputPrefetcher.PrefetchedInput next = data.prefetcher.next();
+        if (data.file != null) {
+            try {
+                data.file.close();
+            } catch (FileSystemException e) {
+                inputErrorHandler.fileCloseError(data.file, e);
+            }
+        }
+        data.file = next.getFile();
+        data.currentFileIndex++;
+        try {
+            if (onNewFile(data.file)) {
+                data.readerRowSet = next.getRowSet();
+                data.currentInput = next.getInput();
+                return true;
+            }
+        } catch (FileSystemException e) {
+            inputErrorHandler.fileOpenError(data.file, e);
+        } catch (KettleException ke) {
+            logInputError(ke);
+        } catch (Exception e) {
+            logInputError(e);
+        }
+        next.discard();
+        return false;
+    }
+
+    /**
+     * next raw row from the reader; errors raised while pulling rows are handled as input errors
+     */
+    private Object[] getReaderRow() {
+        try {
+            return data.readerRowSet.getRow();
+        } catch (JsonReaderException e) {
+            if (e.getCause() instanceof KettleException) {
+                logInputError((KettleException) e.getCause());
+            } else {
+                logInputError(e.getCause());
+            }
+            data.readerRowSet = new QueueRowSet();
+            data.readerRowSet.setDone();
+            return null;
+        }
+    }
+
+    private void closeCurrentInput() {
+        if (data.currentInput != null) {
+            try {
+                data.currentInput.close();
+            } catch (IOException e) {
+                logError(BaseMessages.getString(PKG, "JsonInput.Log.UnexpectedError", e.toString()), e);
+                incrementErrors();
+            }
+            data.currentInput = null;
+        }
+    }
+
     private void sendErrorRow(String errorMsg) {
         try {
             // same error as before
@@ -432,17 +610,51 @@ public class JsonInput extends BaseFileInputStep<JsonInputMeta, JsonInputData> i
     }
 
     private void createReader() throws KettleException {
-        data.reader = new FastJsonReader(meta.getInputFields(), meta.isDefaultPathLeafToNull(), log);
+        if (meta.isStreamingMode()) {
+            // reads consecutive documents as well, line-delimited or not
+            data.reader = new StreamingJsonReader(meta.getInputFields(), meta.isDefaultPathLeafToNull(), log);
+        } else if (meta.isLineDelimited()) {
+            data.reader = new LineDelimitedJsonReader(meta.getInputFields(), meta.isDefaultPathLeafToNull(), log);
+        } else {
+            data.reader = new FastJsonReader(meta.getInputFields(), meta.isDefaultPathLeafToNull(), log);
+        }
         data.reader.setIgnoreMissingPath(meta.isIgnoreMissingPath());
+        // no input needs to give more rows than the whole step does
+        data.reader.setRowLimit(meta.getRowLimit());
+        data.reader.setJsonProvider(JsonProviders.create(meta.getJsonProvider()));
+        if (meta.getResultCacheEntries() > 0 && meta.isInFields() && !meta.getIsAFile()) {
+            // the same documents may come with many rows
+            data.resultCache = new CachingJsonReader(data.reader, meta.getResultCacheEntries(),
+                    meta.getResultCacheSize() * 1024L);
+            data.reader = data.resultCache;
+        }
     }
 
     public void dispose(StepMetaInterface smi, StepDataInterface sdi) {
         meta = (JsonInputMeta) smi;
         data = (JsonInputData) sdi;
+        if (data.prefetcher != null) {
+            data.prefetcher.close();
+            data.prefetcher = null;
+        }
+        if (data.fieldParsers != null) {
+            data.fieldParsers.close();
+            data.fieldParsers = null;
+        }
+        if (data.currentInput != null) {
+            IOUtils.closeQuietly(data.currentInput);
+            data.currentInput = null;
+        }
         if (data.file != null) {
             IOUtils.closeQuietly(data.file);
         }
+        if (data.resultCache != null) {
+            logBasic(BaseMessages.getString(PKG, "JsonInput.Log.ResultCache", data.resultCache.getHits(),
+                    data.resultCache.getMisses(), data.resultCache.getEvictions()));
+            data.resultCache = null;
+        }
         data.inputs = null;
+        data.fieldValues = null;
         data.reader = null;
         data.readerRowSet = null;
         data.repeatedFields = null;
@@ -32,7 +32,10 @@ import java.util.List;
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.CachingJsonReader;
 import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.IJsonReader;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.FieldParserPool;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.InputPrefetcher;
 import org.pentaho.di.trans.steps.fileinput.BaseFileInputStepData;
 
 /**
@@ -81,6 +84,31 @@ public class JsonInputData extends BaseFileInputStepData implements StepDataInte
   public int indexSourceField;
 
   public Iterator<InputStream> inputs;
+  /**
+   * source field values, when they hold the JSON text rather than file names
+   */
+  public Iterator<String> fieldValues;
+  /**
+   * input being read, kept open until its rows are all pulled
+   */
+  public InputStream currentInput;
+  /**
+   * parses next files in the background, if enabled
+   */
+  public InputPrefetcher prefetcher;
+  /**
+   * parses source field values on worker threads, if enabled
+   */
+  public FieldParserPool fieldParsers;
+  /**
+   * the reader, if it keeps the rows of recent source field documents
+   */
+  public CachingJsonReader resultCache;
+  /**
+   * byte range of each file to read, out of <code>nrRanges</code>; whole files if there is one range only
+   */
+  public int rangeNr;
+  public int nrRanges;
   public IJsonReader reader;
   public RowSet readerRowSet;
   public BitSet repeatedFields;
@@ -94,6 +122,7 @@ public class JsonInputData extends BaseFileInputStepData implements StepDataInte
     fr = null;
     is = null;
     indexSourceField = -1;
+    nrRanges = 1;
 
     nrInputFields = -1;
     recordnr = 0;
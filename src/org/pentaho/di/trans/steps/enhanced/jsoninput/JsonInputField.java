@@ -52,6 +52,9 @@ public class JsonInputField extends BaseFileInputField implements Cloneable {
 
   private String path;
 
+  /** objects and arrays are given as their text in the input, as read by the streaming reader */
+  private boolean rawJson;
+
   public JsonInputField( String fieldname ) {
     super();
     setName( fieldname );
@@ -76,6 +79,7 @@ public class JsonInputField extends BaseFileInputField implements Cloneable {
     retval.append( "        " ).append( XMLHandler.addTagValue( "precision", getPrecision() ) );
     retval.append( "        " ).append( XMLHandler.addTagValue( "trim_type", getTrimTypeCode() ) );
     retval.append( "        " ).append( XMLHandler.addTagValue( "repeat", isRepeated() ) );
+    retval.append( "        " ).append( XMLHandler.addTagValue( "raw_json", isRawJson() ) );
 
     retval.append( "      </field>" ).append( Const.CR );
 
@@ -94,6 +98,7 @@ public class JsonInputField extends BaseFileInputField implements Cloneable {
     setPrecision( Const.toInt( XMLHandler.getTagValue( fnode, "precision" ), -1 ) );
     setTrimType( getTrimTypeByCode( XMLHandler.getTagValue( fnode, "trim_type" ) ) );
     setRepeated( !"N".equalsIgnoreCase( XMLHandler.getTagValue( fnode, "repeat" ) ) );
+    setRawJson( "Y".equalsIgnoreCase( XMLHandler.getTagValue( fnode, "raw_json" ) ) );
   }
 
   public ValueMetaInterface toValueMeta( String fieldOriginStepName, VariableSpace vspace ) throws KettlePluginException {
@@ -139,4 +144,16 @@ public class JsonInputField extends BaseFileInputField implements Cloneable {
     this.path = value;
   }
 
+  /**
+   * @return true if objects and arrays are to be given verbatim, as they are written in the input. Only the streaming
+   *         reader keeps the input text; other readers write the parsed value back to JSON.
+   */
+  public boolean isRawJson() {
+    return rawJson;
+  }
+
+  public void setRawJson( boolean rawJson ) {
+    this.rawJson = rawJson;
+  }
+
 }
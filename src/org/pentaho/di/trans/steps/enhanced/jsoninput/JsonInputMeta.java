@@ -70,6 +70,53 @@ import org.w3c.dom.Node;
 public class JsonInputMeta extends BaseFileInputStepMeta implements StepMetaInterface {
   private static Class<?> PKG = JsonInputMeta.class; // for i18n purposes, needed by Translator2!!
 
+  /** Flag : read local files through memory mappings rather than streams */
+  private boolean memoryMappedFiles;
+
+  /** How the file list is shared among step copies */
+  public enum FilePartitioning {
+    /** every copy reads all files */
+    NONE,
+    /** file i goes to copy i modulo the number of copies */
+    ROUND_ROBIN,
+    /** biggest files first, each to the copy with the fewest bytes so far */
+    SIZE_BALANCED,
+    /** line-delimited files are cut in byte ranges, one per copy; other files are shared as with SIZE_BALANCED */
+    BYTE_RANGES;
+
+    public static FilePartitioning getFilePartitioning( String name ) {
+      if ( name != null ) {
+        for ( FilePartitioning partitioning : values() ) {
+          if ( partitioning.name().equalsIgnoreCase( name ) ) {
+            return partitioning;
+          }
+        }
+      }
+      return NONE;
+    }
+  }
+
+  /** Parser building the values paths are evaluated against */
+  public enum JsonProviderType {
+    /** json-smart, the JsonPath default */
+    JSON_SMART,
+    /** Jackson data binding */
+    JACKSON,
+    /** Jackson tokens read straight into maps and lists */
+    JACKSON_STREAMING;
+
+    public static JsonProviderType getJsonProviderType( String name ) {
+      if ( name != null ) {
+        for ( JsonProviderType type : values() ) {
+          if ( type.name().equalsIgnoreCase( name ) ) {
+            return type;
+          }
+        }
+      }
+      return JSON_SMART;
+    }
+  }
+
   public static final String[] RequiredFilesDesc = new String[] {
     BaseMessages.getString( PKG, "System.Combo.No" ), BaseMessages.getString( PKG, "System.Combo.Yes" ) };
 
@@ -214,6 +261,30 @@ public class JsonInputMeta extends BaseFileInputStepMeta implements StepMetaInte
 
   private boolean defaultPathLeafToNull;
 
+  /** Flag : evaluate paths over a token stream, one record at a time, instead of a whole document tree */
+  private boolean streamingMode;
+
+  /** Flag : each line of the input is a JSON document of its own (JSON Lines / NDJSON) */
+  private boolean lineDelimited;
+
+  /** Number of files parsed ahead in the background, 0 to parse each file only once reached */
+  private int prefetchFiles;
+
+  /** How the file list is shared among step copies */
+  private FilePartitioning filePartitioning;
+
+  /** Parser for documents and records */
+  private JsonProviderType jsonProvider;
+
+  /** Number of threads parsing source field values, 0 to parse them on the step thread */
+  private int parseWorkers;
+
+  /** Number of source field documents whose rows are kept for reuse, 0 to parse each value */
+  private int resultCacheEntries;
+
+  /** Estimated memory taken by the rows kept for reuse, in kilobytes; 0 for no limit */
+  private int resultCacheSize;
+
   /** Flag : read url as source */
   private boolean readurl;
 
@@ -542,6 +613,92 @@ public class JsonInputMeta extends BaseFileInputStepMeta implements StepMetaInte
     this.defaultPathLeafToNull = defaultPathLeafToNull;
   }
 
+  public boolean isStreamingMode() {
+    return streamingMode;
+  }
+
+  public void setStreamingMode( boolean streamingMode ) {
+    this.streamingMode = streamingMode;
+  }
+
+  public boolean isLineDelimited() {
+    return lineDelimited;
+  }
+
+  public void setLineDelimited( boolean lineDelimited ) {
+    this.lineDelimited = lineDelimited;
+  }
+
+  public int getPrefetchFiles() {
+    return prefetchFiles;
+  }
+
+  public void setPrefetchFiles( int prefetchFiles ) {
+    this.prefetchFiles = prefetchFiles;
+  }
+
+  public boolean isMemoryMappedFiles() {
+    return memoryMappedFiles;
+  }
+
+  public void setMemoryMappedFiles( boolean memoryMappedFiles ) {
+    this.memoryMappedFiles = memoryMappedFiles;
+  }
+
+  /**
+   * @return how the file list is shared among step copies, never null
+   */
+  public FilePartitioning getFilePartitioning() {
+    return filePartitioning == null ? FilePartitioning.NONE : filePartitioning;
+  }
+
+  /**
+   * @param filePartitioning
+   *          how the file list is shared among step copies, null for {@link FilePartitioning#NONE}
+   */
+  public void setFilePartitioning( FilePartitioning filePartitioning ) {
+    this.filePartitioning = filePartitioning == null ? FilePartitioning.NONE : filePartitioning;
+  }
+
+  /**
+   * @return the parser backend, never null
+   */
+  public JsonProviderType getJsonProvider() {
+    return jsonProvider == null ? JsonProviderType.JSON_SMART : jsonProvider;
+  }
+
+  /**
+   * @param jsonProvider
+   *          the parser backend, null for {@link JsonProviderType#JSON_SMART}
+   */
+  public void setJsonProvider( JsonProviderType jsonProvider ) {
+    this.jsonProvider = jsonProvider == null ? JsonProviderType.JSON_SMART : jsonProvider;
+  }
+
+  public int getParseWorkers() {
+    return parseWorkers;
+  }
+
+  public void setParseWorkers( int parseWorkers ) {
+    this.parseWorkers = parseWorkers;
+  }
+
+  public int getResultCacheEntries() {
+    return resultCacheEntries;
+  }
+
+  public void setResultCacheEntries( int resultCacheEntries ) {
+    this.resultCacheEntries = resultCacheEntries;
+  }
+
+  public int getResultCacheSize() {
+    return resultCacheSize;
+  }
+
+  public void setResultCacheSize( int resultCacheSize ) {
+    this.resultCacheSize = resultCacheSize;
+  }
+
   public String getRowNumberField() {
     return rowNumberField;
   }
@@ -589,6 +746,15 @@ public class JsonInputMeta extends BaseFileInputStepMeta implements StepMetaInte
     retval.append( "    " + XMLHandler.addTagValue( "doNotFailIfNoFile", doNotFailIfNoFile ) );
     retval.append( "    " + XMLHandler.addTagValue( "ignoreMissingPath", ignoreMissingPath ) );
     retval.append( "    " + XMLHandler.addTagValue( "defaultPathLeafToNull", defaultPathLeafToNull ) );
+    retval.append( "    " + XMLHandler.addTagValue( "streamingMode", streamingMode ) );
+    retval.append( "    " + XMLHandler.addTagValue( "lineDelimited", lineDelimited ) );
+    retval.append( "    " + XMLHandler.addTagValue( "prefetchFiles", prefetchFiles ) );
+    retval.append( "    " + XMLHandler.addTagValue( "memoryMappedFiles", memoryMappedFiles ) );
+    retval.append( "    " + XMLHandler.addTagValue( "filePartitioning", getFilePartitioning().name() ) );
+    retval.append( "    " + XMLHandler.addTagValue( "jsonProvider", getJsonProvider().name() ) );
+    retval.append( "    " + XMLHandler.addTagValue( "parseWorkers", parseWorkers ) );
+    retval.append( "    " + XMLHandler.addTagValue( "resultCacheEntries", resultCacheEntries ) );
+    retval.append( "    " + XMLHandler.addTagValue( "resultCacheSize", resultCacheSize ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "rownum_field", rowNumberField ) );
 
     retval.append( "    <file>" ).append( Const.CR );
@@ -659,6 +825,16 @@ public class JsonInputMeta extends BaseFileInputStepMeta implements StepMetaInte
       isIgnoreEmptyFile = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "IsIgnoreEmptyFile" ) );
       ignoreMissingPath = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "ignoreMissingPath" ) );
       defaultPathLeafToNull = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "defaultPathLeafToNull" ) );
+      streamingMode = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "streamingMode" ) );
+      lineDelimited = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "lineDelimited" ) );
+      prefetchFiles = Const.toInt( XMLHandler.getTagValue( stepnode, "prefetchFiles" ), 0 );
+      memoryMappedFiles = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "memoryMappedFiles" ) );
+      filePartitioning =
+          FilePartitioning.getFilePartitioning( XMLHandler.getTagValue( stepnode, "filePartitioning" ) );
+      jsonProvider = JsonProviderType.getJsonProviderType( XMLHandler.getTagValue( stepnode, "jsonProvider" ) );
+      parseWorkers = Const.toInt( XMLHandler.getTagValue( stepnode, "parseWorkers" ), 0 );
+      resultCacheEntries = Const.toInt( XMLHandler.getTagValue( stepnode, "resultCacheEntries" ), 0 );
+      resultCacheSize = Const.toInt( XMLHandler.getTagValue( stepnode, "resultCacheSize" ), 0 );
 
       doNotFailIfNoFile = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "doNotFailIfNoFile" ) );
       includeRowNumber = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "rownum" ) );
@@ -726,6 +902,15 @@ public class JsonInputMeta extends BaseFileInputStepMeta implements StepMetaInte
     isIgnoreEmptyFile = false;
     ignoreMissingPath = false;
     defaultPathLeafToNull = false;
+    streamingMode = false;
+    lineDelimited = false;
+    prefetchFiles = 0;
+    memoryMappedFiles = true;
+    filePartitioning = FilePartitioning.NONE;
+    jsonProvider = JsonProviderType.JSON_SMART;
+    parseWorkers = 0;
+    resultCacheEntries = 0;
+    resultCacheSize = 0;
     doNotFailIfNoFile = true;
     includeFilename = false;
     filenameField = "";
@@ -800,6 +985,16 @@ public class JsonInputMeta extends BaseFileInputStepMeta implements StepMetaInte
       isIgnoreEmptyFile = rep.getStepAttributeBoolean( id_step, "IsIgnoreEmptyFile" );
       ignoreMissingPath = rep.getStepAttributeBoolean( id_step, "ignoreMissingPath" );
       defaultPathLeafToNull = rep.getStepAttributeBoolean( id_step, "defaultPathLeafToNull" );
+      streamingMode = rep.getStepAttributeBoolean( id_step, "streamingMode" );
+      lineDelimited = rep.getStepAttributeBoolean( id_step, "lineDelimited" );
+      prefetchFiles = (int) rep.getStepAttributeInteger( id_step, "prefetchFiles" );
+      memoryMappedFiles = rep.getStepAttributeBoolean( id_step, "memoryMappedFiles" );
+      filePartitioning =
+          FilePartitioning.getFilePartitioning( rep.getStepAttributeString( id_step, "filePartitioning" ) );
+      jsonProvider = JsonProviderType.getJsonProviderType( rep.getStepAttributeString( id_step, "jsonProvider" ) );
+      parseWorkers = (int) rep.getStepAttributeInteger( id_step, "parseWorkers" );
+      resultCacheEntries = (int) rep.getStepAttributeInteger( id_step, "resultCacheEntries" );
+      resultCacheSize = (int) rep.getStepAttributeInteger( id_step, "resultCacheSize" );
 
       doNotFailIfNoFile = rep.getStepAttributeBoolean( id_step, "doNotFailIfNoFile" );
 
@@ -835,6 +1030,7 @@ public class JsonInputMeta extends BaseFileInputStepMeta implements StepMetaInte
         field.setTrimType( ValueMetaBase.getTrimTypeByCode( rep.getStepAttributeString(
           id_step, i, "field_trim_type" ) ) );
         field.setRepeated( rep.getStepAttributeBoolean( id_step, i, "field_repeat" ) );
+        field.setRawJson( rep.getStepAttributeBoolean( id_step, i, "field_raw_json" ) );
 
         getInputFields()[i] = field;
       }
@@ -869,6 +1065,15 @@ public class JsonInputMeta extends BaseFileInputStepMeta implements StepMetaInte
       rep.saveStepAttribute( id_transformation, id_step, "IsIgnoreEmptyFile", isIgnoreEmptyFile );
       rep.saveStepAttribute( id_transformation, id_step, "ignoreMissingPath", ignoreMissingPath );
       rep.saveStepAttribute( id_transformation, id_step, "defaultPathLeafToNull", defaultPathLeafToNull );
+      rep.saveStepAttribute( id_transformation, id_step, "streamingMode", streamingMode );
+      rep.saveStepAttribute( id_transformation, id_step, "lineDelimited", lineDelimited );
+      rep.saveStepAttribute( id_transformation, id_step, "prefetchFiles", prefetchFiles );
+      rep.saveStepAttribute( id_transformation, id_step, "memoryMappedFiles", memoryMappedFiles );
+      rep.saveStepAttribute( id_transformation, id_step, "filePartitioning", getFilePartitioning().name() );
+      rep.saveStepAttribute( id_transformation, id_step, "jsonProvider", getJsonProvider().name() );
+      rep.saveStepAttribute( id_transformation, id_step, "parseWorkers", parseWorkers );
+      rep.saveStepAttribute( id_transformation, id_step, "resultCacheEntries", resultCacheEntries );
+      rep.saveStepAttribute( id_transformation, id_step, "resultCacheSize", resultCacheSize );
 
       rep.saveStepAttribute( id_transformation, id_step, "doNotFailIfNoFile", doNotFailIfNoFile );
 
@@ -898,6 +1103,7 @@ public class JsonInputMeta extends BaseFileInputStepMeta implements StepMetaInte
         rep.saveStepAttribute( id_transformation, id_step, i, "field_precision", field.getPrecision() );
         rep.saveStepAttribute( id_transformation, id_step, i, "field_trim_type", field.getTrimTypeCode() );
         rep.saveStepAttribute( id_transformation, id_step, i, "field_repeat", field.isRepeated() );
+        rep.saveStepAttribute( id_transformation, id_step, i, "field_raw_json", field.isRawJson() );
       }
       rep.saveStepAttribute( id_transformation, id_step, "IsInFields", inFields );
       rep.saveStepAttribute( id_transformation, id_step, "IsAFile", isAFile );
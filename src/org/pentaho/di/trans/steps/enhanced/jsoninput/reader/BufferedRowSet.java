@@ -0,0 +1,127 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.enhanced.jsoninput.reader;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.SingleRowRowSet;
+
+/**
+ * Rows already pulled from a reader row set, possibly followed by the rest of it. An error met while pulling them is
+ * thrown once they were all read, as the reader row set would have.
+ */
+class BufferedRowSet extends SingleRowRowSet {
+  private final Deque<Object[]> rows = new ArrayDeque<>();
+  private JsonReaderException error;
+  /** rows not pulled yet, null if none */
+  private RowSet rest;
+
+  /**
+   * Pulls all the rows of <code>source</code>.
+   */
+  BufferedRowSet( RowSet source ) {
+    this( source, Integer.MAX_VALUE );
+  }
+
+  /**
+   * Pulls up to <code>maxRows</code> rows of <code>source</code>, the rest of which is read from it afterwards.
+   */
+  BufferedRowSet( RowSet source, int maxRows ) {
+    super();
+    try {
+      Object[] row;
+      while ( rows.size() < maxRows && ( row = source.getRow() ) != null ) {
+        rows.add( row );
+      }
+      if ( rows.size() == maxRows ) {
+        rest = source;
+      }
+    } catch ( JsonReaderException e ) {
+      error = e;
+    }
+  }
+
+  /**
+   * Hands out copies of the given rows, which are left as they are.
+   */
+  BufferedRowSet( List<Object[]> source ) {
+    super();
+    for ( Object[] row : source ) {
+      rows.add( row.clone() );
+    }
+  }
+
+  /**
+   * @return if pulling the rows failed
+   */
+  boolean hasError() {
+    return error != null;
+  }
+
+  /**
+   * @return copies of the pulled rows not read yet
+   */
+  List<Object[]> copyRows() {
+    List<Object[]> copy = new ArrayList<>( rows.size() );
+    for ( Object[] row : rows ) {
+      copy.add( row.clone() );
+    }
+    return copy;
+  }
+
+  @Override
+  public Object[] getRow() {
+    if ( rows.isEmpty() && error != null ) {
+      JsonReaderException e = error;
+      error = null;
+      throw e;
+    }
+    if ( rows.isEmpty() && rest != null ) {
+      return rest.getRow();
+    }
+    return rows.poll();
+  }
+
+  @Override
+  public int size() {
+    return rest == null ? rows.size() : rows.size() + rest.size();
+  }
+
+  @Override
+  public boolean isDone() {
+    return rows.isEmpty() && error == null && ( rest == null || rest.isDone() );
+  }
+
+  @Override
+  public void clear() {
+    rows.clear();
+    if ( rest != null ) {
+      rest.clear();
+    }
+  }
+}
@@ -0,0 +1,284 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.enhanced.jsoninput.reader;
+
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.JsonInputField;
+
+import com.jayway.jsonpath.spi.json.JsonProvider;
+
+/**
+ * Keeps the rows read from recent text documents, so that a document seen again isn't parsed again.<br>
+ * Documents are told apart by a digest of their text. The least recently used ones are dropped once there are more
+ * than the entry limit, or once the memory their rows take is estimated to be over the size limit. Rows of a kept
+ * document are pulled all at once, and are handed out as copies. A document whose rows alone are over that limit is
+ * not kept, nor is one that failed; one whose text alone is over it is read lazily as usual.<br>
+ * Input streams are read by the wrapped reader as they are. Safe for concurrent {@link #parse(String)} calls if the
+ * wrapped reader is.
+ */
+public class CachingJsonReader implements IJsonReader {
+
+  private static final String DIGEST_ALGORITHM = "SHA-256";
+  /** chars digested at once */
+  private static final int CHUNK_SIZE = 4096;
+
+  /** estimated bytes taken by an object header, and by an array header */
+  private static final int OBJECT_OVERHEAD = 16;
+  private static final int REFERENCE_SIZE = 4;
+  /** estimated bytes taken by a string besides its chars */
+  private static final int STRING_OVERHEAD = 40;
+  /** estimated bytes taken by a boxed number, a date or such */
+  private static final int VALUE_SIZE = 24;
+
+  private final IJsonReader reader;
+  private final int maxEntries;
+  private final long maxSize;
+
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>( 16, 0.75f, true );
+  private long size;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  private final ThreadLocal<Digester> digesters = new ThreadLocal<Digester>() {
+    @Override
+    protected Digester initialValue() {
+      return new Digester();
+    }
+  };
+
+  /**
+   * @param maxEntries
+   *          number of documents kept
+   * @param maxSize
+   *          estimated memory taken by the rows kept, in bytes; no limit if not positive
+   */
+  public CachingJsonReader( IJsonReader reader, int maxEntries, long maxSize ) {
+    this.reader = reader;
+    this.maxEntries = maxEntries;
+    this.maxSize = maxSize > 0 ? maxSize : Long.MAX_VALUE;
+  }
+
+  @Override
+  public void setFields( JsonInputField[] fields ) throws KettleException {
+    reader.setFields( fields );
+    clear();
+  }
+
+  @Override
+  public boolean isIgnoreMissingPath() {
+    return reader.isIgnoreMissingPath();
+  }
+
+  @Override
+  public void setIgnoreMissingPath( boolean value ) {
+    reader.setIgnoreMissingPath( value );
+    clear();
+  }
+
+  @Override
+  public void setRowLimit( long rowLimit ) {
+    reader.setRowLimit( rowLimit );
+    clear();
+  }
+
+  @Override
+  public void setJsonProvider( JsonProvider provider ) {
+    reader.setJsonProvider( provider );
+  }
+
+  @Override
+  public RowSet parse( InputStream in ) throws KettleException {
+    return reader.parse( in );
+  }
+
+  @Override
+  public RowSet parse( String json ) throws KettleException {
+    if ( 2L * json.length() > maxSize ) {
+      // whatever rows it gives are likely too big too
+      synchronized ( this ) {
+        misses++;
+      }
+      return reader.parse( json );
+    }
+    Key key = digesters.get().digest( json );
+    List<Object[]> rows = get( key );
+    if ( rows != null ) {
+      return new BufferedRowSet( rows );
+    }
+    BufferedRowSet parsed = new BufferedRowSet( reader.parse( json ) );
+    if ( !parsed.hasError() ) {
+      List<Object[]> copy = parsed.copyRows();
+      long weight = weigh( copy );
+      if ( weight <= maxSize ) {
+        put( key, new Entry( copy, weight ) );
+      }
+    }
+    return parsed;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return number of documents dropped to keep within the limits
+   */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  private synchronized List<Object[]> get( Key key ) {
+    Entry entry = entries.get( key );
+    if ( entry != null ) {
+      hits++;
+      return entry.rows;
+    }
+    misses++;
+    return null;
+  }
+
+  private synchronized void put( Key key, Entry entry ) {
+    Entry previous = entries.put( key, entry );
+    if ( previous != null ) {
+      // parsed by another thread meanwhile
+      size -= previous.weight;
+    }
+    size += entry.weight;
+    Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+    while ( entries.size() > maxEntries || size > maxSize ) {
+      size -= eldest.next().getValue().weight;
+      eldest.remove();
+      evictions++;
+    }
+  }
+
+  private synchronized void clear() {
+    entries.clear();
+    size = 0;
+  }
+
+  /**
+   * @return rough estimate of the memory taken by the rows, and the values only they refer to, on a 64 bit JVM
+   */
+  static long weigh( List<Object[]> rows ) {
+    long weight = OBJECT_OVERHEAD + REFERENCE_SIZE * (long) rows.size();
+    for ( Object[] row : rows ) {
+      weight += OBJECT_OVERHEAD + REFERENCE_SIZE * row.length;
+      for ( Object value : row ) {
+        if ( value instanceof String ) {
+          weight += STRING_OVERHEAD + 2L * ( (String) value ).length();
+        } else if ( value instanceof byte[] ) {
+          weight += OBJECT_OVERHEAD + ( (byte[]) value ).length;
+        } else if ( value != null ) {
+          weight += VALUE_SIZE;
+        }
+      }
+    }
+    return weight;
+  }
+
+  private static class Entry {
+    private final List<Object[]> rows;
+    private final long weight;
+
+    Entry( List<Object[]> rows, long weight ) {
+      this.rows = rows;
+      this.weight = weight;
+    }
+  }
+
+  private static class Key {
+    private final byte[] digest;
+    private final int length;
+    private final int hash;
+
+    Key( byte[] digest, int length ) {
+      this.digest = digest;
+      this.length = length;
+      this.hash = Arrays.hashCode( digest );
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals( Object obj ) {
+      if ( !( obj instanceof Key ) ) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return length == other.length && Arrays.equals( digest, other.digest );
+    }
+  }
+
+  /**
+   * Digests the chars of a text as they are, with no charset involved.
+   */
+  private static class Digester {
+    private final MessageDigest digest;
+    private final char[] chars = new char[ CHUNK_SIZE ];
+    private final byte[] bytes = new byte[ CHUNK_SIZE * 2 ];
+
+    Digester() {
+      try {
+        digest = MessageDigest.getInstance( DIGEST_ALGORITHM );
+      } catch ( NoSuchAlgorithmException e ) {
+        // required on every platform
+        throw new IllegalStateException( e );
+      }
+    }
+
+    Key digest( String text ) {
+      int length = text.length();
+      for ( int start = 0; start < length; start += CHUNK_SIZE ) {
+        int end = Math.min( length, start + CHUNK_SIZE );
+        text.getChars( start, end, chars, 0 );
+        int count = end - start;
+        for ( int i = 0; i < count; i++ ) {
+          bytes[ 2 * i ] = (byte) ( chars[ i ] >> 8 );
+          bytes[ 2 * i + 1 ] = (byte) chars[ i ];
+        }
+        digest.update( bytes, 0, 2 * count );
+      }
+      return new Key( digest.digest(), length );
+    }
+  }
+}
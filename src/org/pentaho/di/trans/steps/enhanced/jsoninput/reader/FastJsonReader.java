@@ -24,6 +24,7 @@ package org.pentaho.di.trans.steps.enhanced.jsoninput.reader;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import org.pentaho.di.core.RowSet;
@@ -33,12 +34,16 @@ import org.pentaho.di.core.logging.LogChannelInterface;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.steps.enhanced.jsoninput.JsonInputField;
 import org.pentaho.di.trans.steps.enhanced.jsoninput.JsonInputMeta;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.JsonProviders.JacksonProvider;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.SimpleJsonPath.Step;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.SimpleJsonPath.StepType;
 
 import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.Option;
 import com.jayway.jsonpath.ParseContext;
 import com.jayway.jsonpath.ReadContext;
+import com.jayway.jsonpath.spi.json.JsonProvider;
 
 /**
  * @author Samatar
@@ -53,29 +58,40 @@ public class FastJsonReader implements IJsonReader {
   // see https://tools.ietf.org/html/rfc7159#section-8.1
   private static final String JSON_CHARSET = "UTF-8";
 
-  private ReadContext jsonReadContext;
   private Configuration jsonConfiguration;
+  private JsonProvider jsonProvider;
 
   private boolean ignoreMissingPath;
   private boolean defaultPathLeafToNull;
+  private long rowLimit;
 
   private JsonInputField[] fields;
-  private JsonPath[] paths = null;
+  private MultiPathEvaluator evaluator;
+  /** parts of a document the field paths can reach, null if all */
+  private Projection projection;
   private LogChannelInterface log;
 
+  /** steps leading to the records, if all fields share them */
+  private List<Step> recordPath;
+  /** evaluates the rest of every field path against a record */
+  private MultiPathEvaluator recordEvaluator;
+
   private static final Option[] DEFAULT_OPTIONS = { Option.SUPPRESS_EXCEPTIONS, Option.ALWAYS_RETURN_LIST };
 
+  /** compiled field paths, shared by all readers */
+  private static final PathPlanCache<Plan> PLANS = new PathPlanCache<>( 256 );
+
   protected FastJsonReader( LogChannelInterface log ) throws KettleException {
     this.ignoreMissingPath = false;
     this.defaultPathLeafToNull = false;
-    this.jsonConfiguration = Configuration.defaultConfiguration().addOptions( DEFAULT_OPTIONS );
+    this.jsonConfiguration = createConfiguration();
     this.log = log;
   }
 
   protected FastJsonReader( JsonInputField[] fields, LogChannelInterface log ) throws KettleException {
     this( log );
     this.fields = fields;
-    this.paths = compilePaths( fields );
+    compileEvaluation();
   }
 
   public FastJsonReader( JsonInputField[] fields, boolean defaultPathLeafToNull, LogChannelInterface log )
@@ -95,63 +111,180 @@ public class FastJsonReader implements IJsonReader {
     return options.toArray( new Option[ options.size() ] );
   }
 
-  private void updateConfig( Option option, boolean enabled ) {
-    if ( enabled ) {
-      jsonConfiguration = jsonConfiguration.addOptions( option );
-    } else {
-      jsonConfiguration = Configuration.defaultConfiguration().addOptions( getOptions() );
-    }
+  private Configuration createConfiguration() {
+    return Configuration.builder().jsonProvider( jsonProvider ).options( getOptions() ).build();
   }
 
   public void setIgnoreMissingPath( boolean value ) {
     this.ignoreMissingPath = value;
   }
 
+  @Override
+  public void setRowLimit( long rowLimit ) {
+    this.rowLimit = rowLimit;
+  }
+
   public void setDefaultPathLeafToNull( boolean value ) {
     if ( value != this.defaultPathLeafToNull ) {
       this.defaultPathLeafToNull = value;
-      updateConfig( Option.DEFAULT_PATH_LEAF_TO_NULL, value );
+      jsonConfiguration = createConfiguration();
     }
   }
 
+  @Override
+  public void setJsonProvider( JsonProvider provider ) {
+    this.jsonProvider = provider;
+    jsonConfiguration = createConfiguration();
+  }
+
   private ParseContext getParseContext() {
     return JsonPath.using( jsonConfiguration );
   }
 
-  private ReadContext getReadContext() {
-    return jsonReadContext;
+  /**
+   * Takes the plan for the field paths, compiled by any reader that had the same paths.
+   */
+  private void compileEvaluation() {
+    List<Object> key = PathPlanCache.key( fields );
+    Plan plan = PLANS.get( key );
+    if ( plan == null ) {
+      plan = new Plan( fields );
+      PLANS.put( key, plan );
+    }
+    evaluator = plan.evaluator;
+    projection = plan.projection;
+    recordPath = plan.recordPath;
+    recordEvaluator = plan.recordEvaluator;
   }
 
-  private static JsonPath[] compilePaths( JsonInputField[] fields ) {
-    JsonPath[] paths = new JsonPath[ fields.length ];
-    int i = 0;
-    for ( JsonInputField field : fields ) {
-      paths[ i++ ] = JsonPath.compile( field.getPath() );
+  /**
+   * Field paths merged for a single traversal, and a record path if there is one: the longest prefix shared by all
+   * fields that ends with a wildcard. Each node it selects is a record, from which the rest of every field path is
+   * read.
+   */
+  private static class Plan {
+    private final MultiPathEvaluator evaluator;
+    private final Projection projection;
+    private List<Step> recordPath;
+    private MultiPathEvaluator recordEvaluator;
+
+    Plan( JsonInputField[] fields ) {
+      SimpleJsonPath[] parsed = new SimpleJsonPath[ fields.length ];
+      List<List<Step>> steps = new ArrayList<>( fields.length );
+      JsonPath[] tails = new JsonPath[ fields.length ];
+      for ( int i = 0; i < fields.length; i++ ) {
+        parsed[ i ] = SimpleJsonPath.parse( fields[ i ].getPath() );
+        steps.add( parsed[ i ].getSteps() );
+        if ( parsed[ i ].getTail() != null ) {
+          tails[ i ] = JsonPath.compile( parsed[ i ].getTail() );
+        }
+      }
+      evaluator = new MultiPathEvaluator( steps, tails );
+      projection = Projection.compile( steps );
+      int common = SimpleJsonPath.commonPrefix( parsed );
+      for ( int i = 0; i < common; i++ ) {
+        if ( parsed[ 0 ].getSteps().get( i ).getType() == StepType.FILTER ) {
+          // records are found by navigation alone
+          common = i;
+        }
+      }
+      while ( common > 0 && parsed[ 0 ].getSteps().get( common - 1 ).getType() != StepType.WILDCARD ) {
+        common--;
+      }
+      if ( common == 0 ) {
+        return;
+      }
+      List<List<Step>> relativeSteps = new ArrayList<>( fields.length );
+      for ( List<Step> fieldSteps : steps ) {
+        relativeSteps.add( fieldSteps.subList( common, fieldSteps.size() ) );
+      }
+      recordPath = parsed[ 0 ].getSteps().subList( 0, common );
+      recordEvaluator = new MultiPathEvaluator( relativeSteps, tails );
     }
-    return paths;
   }
 
-  protected void readInput( InputStream is ) throws KettleException {
-    jsonReadContext = getParseContext().parse( is, JSON_CHARSET );
-    if ( jsonReadContext == null ) {
+  /**
+   * @return the provider to read documents from parser tokens with, leaving out what no field path reaches; null if
+   *         they must be read whole
+   */
+  private JacksonProvider getProjectingProvider() {
+    // json-smart has its own parser, not quite as strict
+    return projection != null && jsonProvider instanceof JacksonProvider ? (JacksonProvider) jsonProvider : null;
+  }
+
+  protected ReadContext readInput( InputStream is ) throws KettleException {
+    JacksonProvider projecting = getProjectingProvider();
+    ReadContext context = projecting == null
+        ? getParseContext().parse( is, JSON_CHARSET )
+        : getParseContext().parse( projecting.parse( is, JSON_CHARSET, projection ) );
+    if ( context == null ) {
       throw new KettleException( BaseMessages.getString( PKG, "JsonReader.Error.ReadUrl.Null" ) );
     }
+    return context;
+  }
+
+  protected ReadContext readInput( String json ) throws KettleException {
+    json = stripByteOrderMark( json );
+    JacksonProvider projecting = getProjectingProvider();
+    ReadContext context = projecting == null
+        ? getParseContext().parse( json )
+        : getParseContext().parse( projecting.parse( json, projection ) );
+    if ( context == null ) {
+      throw new KettleException( BaseMessages.getString( PKG, "JsonReader.Error.ReadString.Null" ) );
+    }
+    return context;
   }
 
   public boolean isIgnoreMissingPath() {
     return this.ignoreMissingPath;
   }
 
+  protected JsonInputField[] getFields() {
+    return fields;
+  }
+
+  protected LogChannelInterface getLog() {
+    return log;
+  }
+
+  protected long getRowLimit() {
+    return rowLimit;
+  }
+
   @Override
   public void setFields( JsonInputField[] fields ) throws KettleException {
     this.fields = fields;
-    this.paths = compilePaths( fields );
+    compileEvaluation();
   }
 
+  /**
+   * Parses the whole input before returning. No state is kept across calls: inputs can be parsed concurrently.
+   */
   @Override
   public RowSet parse( InputStream in ) throws KettleException {
-    readInput( in );
-    List<List<?>> results = evalCombinedResult();
+    return evaluate( readInput( in ) );
+  }
+
+  /**
+   * Parses the whole input before returning, as {@link #parse(InputStream)} does.
+   */
+  @Override
+  public RowSet parse( String json ) throws KettleException {
+    return evaluate( readInput( json ) );
+  }
+
+  /**
+   * @return a byte order mark kept from decoding dropped, as byte parsers do
+   */
+  static String stripByteOrderMark( String json ) {
+    return json.length() > 0 && json.charAt( 0 ) == '\uFEFF' ? json.substring( 1 ) : json;
+  }
+
+  private RowSet evaluate( ReadContext context ) throws KettleException {
+    if ( recordPath != null ) {
+      return new RecordRowSet( context.json() );
+    }
+    List<List<?>> results = evalCombinedResult( context );
     if ( log.isDetailed() ) {
       int len = results.isEmpty() ? 0 : results.get( 0 ).size();
       log.logDetailed( BaseMessages.getString( PKG, "JsonInput.Log.NrRecords", len ) );
@@ -201,13 +334,47 @@ public class FastJsonReader implements IJsonReader {
     }
   }
 
-  private List<List<?>> evalCombinedResult() throws KettleException {
+  /**
+   * Builds rows as they are pulled, walking the records of a parsed document. Rows are built per record: a field
+   * with fewer values than the others in a record gets nulls.
+   */
+  private class RecordRowSet extends LazyRowSet {
+    private Iterator<Object> records;
+
+    RecordRowSet( Object document ) {
+      super( fields, ignoreMissingPath, rowLimit, log );
+      records = new SimpleJsonPath.NodeIterator( jsonConfiguration.jsonProvider(), document, recordPath );
+    }
+
+    @Override
+    protected boolean readNext() {
+      if ( !records.hasNext() ) {
+        return false;
+      }
+      addRecord( recordEvaluator.evaluate( records.next(), jsonConfiguration ) );
+      return true;
+    }
+
+    @Override
+    protected void closeInput() {
+      records = null;
+    }
+  }
+
+  /**
+   * Evaluates every field path against a parsed input, with no cross-field checks. Values past the row limit are left
+   * out.
+   */
+  protected List<List<?>> evalPaths( ReadContext context ) {
+    return evaluator.evaluate( context.json(), jsonConfiguration, rowLimit );
+  }
+
+  private List<List<?>> evalCombinedResult( ReadContext context ) throws KettleException {
     int lastSize = -1;
     String prevPath = null;
-    List<List<?>> results = new ArrayList<>( paths.length );
-    int i = 0;
-    for ( JsonPath path : paths ) {
-      List<Object> res = getReadContext().read( path );
+    List<List<?>> results = evalPaths( context );
+    for ( int i = 0; i < results.size(); i++ ) {
+      List<?> res = results.get( i );
       if ( res.size() != lastSize && lastSize > 0 ) {
         throw new KettleException( BaseMessages.getString(
             PKG, "JsonInput.Error.BadStructure", res.size(), fields[i].getPath(), prevPath, lastSize ) );
@@ -215,10 +382,8 @@ public class FastJsonReader implements IJsonReader {
       if ( res.size() == 0 && !isIgnoreMissingPath() ) {
         throw new KettleException( BaseMessages.getString( PKG, "JsonReader.Error.CanNotFindPath", fields[i].getPath() ) );
       }
-      results.add( res );
       lastSize = res.size();
       prevPath = fields[i].getPath();
-      i++;
     }
     return results;
   }
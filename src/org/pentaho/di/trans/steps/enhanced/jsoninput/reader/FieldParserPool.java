@@ -0,0 +1,186 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.enhanced.jsoninput.reader;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Parses the JSON source field of incoming rows on a pool of threads, handing the results back in row order.<br>
+ * Rows are pulled from the iterator, on the calling thread, by batches of {@link #BATCH_SIZE}; at most two batches
+ * per worker are pending. Each worker parses its batch and pulls all the rows of each value, so that only output
+ * conversion is left to the caller.<br>
+ * The reader must support concurrent {@link IJsonReader#parse(String)} calls.
+ */
+public class FieldParserPool {
+
+  /** rows handed to a worker at once */
+  private static final int BATCH_SIZE = 50;
+
+  private final Iterator<Object[]> rows;
+  private final int fieldIndex;
+  private final IJsonReader reader;
+  private final int maxPending;
+  private final ExecutorService executor;
+  private final Deque<Future<List<ParsedField>>> pending = new ArrayDeque<>();
+  private Iterator<ParsedField> current;
+
+  /**
+   * @param fieldIndex
+   *          position of the source field in incoming rows
+   */
+  public FieldParserPool( Iterator<Object[]> rows, int fieldIndex, IJsonReader reader, int workers,
+      final String threadName ) {
+    this.rows = rows;
+    this.fieldIndex = fieldIndex;
+    this.reader = reader;
+    this.maxPending = 2 * workers;
+    this.executor = Executors.newFixedThreadPool( workers, new ThreadFactory() {
+      private final AtomicInteger threadNr = new AtomicInteger();
+
+      @Override
+      public Thread newThread( Runnable runnable ) {
+        Thread thread = new Thread( runnable, threadName + " " + threadNr.incrementAndGet() );
+        thread.setDaemon( true );
+        return thread;
+      }
+    } );
+    fill();
+  }
+
+  public boolean hasNext() {
+    return ( current != null && current.hasNext() ) || !pending.isEmpty();
+  }
+
+  /**
+   * Waits for the next row to be parsed, if needed; more rows are pulled and handed to workers meanwhile.
+   *
+   * @return the next row, in incoming order
+   */
+  public ParsedField next() throws KettleException {
+    if ( current == null || !current.hasNext() ) {
+      Future<List<ParsedField>> batch = pending.poll();
+      fill();
+      current = getBatch( batch ).iterator();
+    }
+    return current.next();
+  }
+
+  /**
+   * Stops the pool, discarding rows not handed back yet.
+   */
+  public void close() {
+    executor.shutdownNow();
+    pending.clear();
+    current = null;
+  }
+
+  private void fill() {
+    while ( pending.size() < maxPending && rows.hasNext() ) {
+      final List<Object[]> batch = new ArrayList<>( BATCH_SIZE );
+      while ( batch.size() < BATCH_SIZE && rows.hasNext() ) {
+        batch.add( rows.next() );
+      }
+      pending.add( executor.submit( new Callable<List<ParsedField>>() {
+        @Override
+        public List<ParsedField> call() {
+          List<ParsedField> parsed = new ArrayList<>( batch.size() );
+          for ( Object[] row : batch ) {
+            parsed.add( parse( row ) );
+          }
+          return parsed;
+        }
+      } ) );
+    }
+  }
+
+  private static List<ParsedField> getBatch( Future<List<ParsedField>> batch ) throws KettleException {
+    try {
+      return batch.get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new KettleException( e );
+    } catch ( ExecutionException e ) {
+      // parsing errors are kept with their row
+      throw new KettleException( e.getCause() );
+    }
+  }
+
+  private ParsedField parse( Object[] row ) {
+    ParsedField parsed = new ParsedField( row );
+    try {
+      String value = row == null || row.length <= fieldIndex ? null : (String) row[ fieldIndex ];
+      if ( value != null ) {
+        parsed.rowSet = new BufferedRowSet( reader.parse( value ) );
+      }
+    } catch ( KettleException | RuntimeException e ) {
+      parsed.error = e;
+    }
+    return parsed;
+  }
+
+  public static class ParsedField {
+    private final Object[] row;
+    private RowSet rowSet;
+    private Exception error;
+
+    private ParsedField( Object[] row ) {
+      this.row = row;
+    }
+
+    /**
+     * @return the incoming row the value was read from
+     */
+    public Object[] getRow() {
+      return row;
+    }
+
+    /**
+     * @return the rows read from the value; null if there was no value
+     * @throws KettleException
+     *           if it couldn't be parsed
+     */
+    public RowSet getRowSet() throws KettleException {
+      if ( error instanceof KettleException ) {
+        throw (KettleException) error;
+      } else if ( error != null ) {
+        throw (RuntimeException) error;
+      }
+      return rowSet;
+    }
+  }
+
+}
@@ -0,0 +1,117 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.enhanced.jsoninput.reader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.JsonInputMeta.FilePartitioning;
+
+/**
+ * Shares a file list among step copies, each copy reading its own files only.<br>
+ * Every copy computes the same assignment on its own, from the full list; a copy's files keep their list order.
+ */
+public class FilePartitioner {
+
+  private FilePartitioner() {
+  }
+
+  /**
+   * @param copyNr
+   *          copy to get the files of, from 0 to <code>nrCopies - 1</code>
+   * @return files assigned to the given copy
+   */
+  public static List<FileObject> getFiles( List<FileObject> files, FilePartitioning partitioning, int copyNr,
+      int nrCopies ) {
+    if ( nrCopies <= 1 || partitioning == null || partitioning == FilePartitioning.NONE ) {
+      return files;
+    }
+    // files that can't be cut in ranges are balanced by size
+    int[] assignment = partitioning == FilePartitioning.ROUND_ROBIN
+        ? assignRoundRobin( files, nrCopies )
+        : assignBySize( files, nrCopies );
+    List<FileObject> share = new ArrayList<>( files.size() / nrCopies + 1 );
+    for ( int i = 0; i < files.size(); i++ ) {
+      if ( assignment[ i ] == copyNr ) {
+        share.add( files.get( i ) );
+      }
+    }
+    return share;
+  }
+
+  private static int[] assignRoundRobin( List<FileObject> files, int nrCopies ) {
+    int[] assignment = new int[ files.size() ];
+    for ( int i = 0; i < assignment.length; i++ ) {
+      assignment[ i ] = i % nrCopies;
+    }
+    return assignment;
+  }
+
+  /**
+   * Biggest files first, each to the copy with the fewest bytes so far.
+   */
+  private static int[] assignBySize( List<FileObject> files, int nrCopies ) {
+    final long[] sizes = new long[ files.size() ];
+    Integer[] order = new Integer[ files.size() ];
+    for ( int i = 0; i < sizes.length; i++ ) {
+      sizes[ i ] = getSize( files.get( i ) );
+      order[ i ] = i;
+    }
+    Arrays.sort( order, new Comparator<Integer>() {
+      @Override
+      public int compare( Integer a, Integer b ) {
+        // ties keep list order, for all copies to agree
+        return sizes[ a ] != sizes[ b ] ? Long.compare( sizes[ b ], sizes[ a ] ) : Integer.compare( a, b );
+      }
+    } );
+    long[] loads = new long[ nrCopies ];
+    int[] assignment = new int[ sizes.length ];
+    for ( int idx : order ) {
+      int copy = 0;
+      for ( int c = 1; c < nrCopies; c++ ) {
+        if ( loads[ c ] < loads[ copy ] ) {
+          copy = c;
+        }
+      }
+      assignment[ idx ] = copy;
+      loads[ copy ] += sizes[ idx ];
+    }
+    return assignment;
+  }
+
+  /**
+   * @return file size, 0 if it can't be read: errors are reported by the copy that gets the file
+   */
+  private static long getSize( FileObject file ) {
+    try {
+      return file.exists() ? file.getContent().getSize() : 0L;
+    } catch ( FileSystemException e ) {
+      return 0L;
+    }
+  }
+
+}
@@ -28,6 +28,8 @@ import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.trans.steps.enhanced.jsoninput.JsonInputField;
 
+import com.jayway.jsonpath.spi.json.JsonProvider;
+
 public interface IJsonReader {
 
   /**
@@ -42,9 +44,24 @@ public interface IJsonReader {
 
   void setIgnoreMissingPath( boolean value );
 
+  /**
+   * Rows needed from each input, all if not positive: an input is read no further once it gave that many.
+   */
+  void setRowLimit( long rowLimit );
+
+  /**
+   * Parser building the values paths are evaluated against, JsonPath's default if null.
+   */
+  void setJsonProvider( JsonProvider provider );
+
   /**
    * parse compiled fields into a rowset
    */
   public RowSet parse( InputStream in ) throws KettleException;
 
+  /**
+   * parse compiled fields into a rowset, from text already decoded
+   */
+  public RowSet parse( String json ) throws KettleException;
+
 }
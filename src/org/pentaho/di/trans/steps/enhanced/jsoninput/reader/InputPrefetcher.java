@@ -0,0 +1,214 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.enhanced.jsoninput.reader;
+
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Opens and parses the next files of a list in the background, while the rows of the current one are being read.<br>
+ * At most <code>depth</code> files are parsed ahead, each by a thread of its own. Files are handed back in list order,
+ * whatever the order their parsing completes in. Readers that give rows as they parse (streaming, line-delimited)
+ * have their first rows read ahead as well, up to {@link #READ_AHEAD_ROWS} per file.<br>
+ * The reader must support concurrent {@link IJsonReader#parse(InputStream)} calls.
+ */
+public class InputPrefetcher {
+
+  /** rows of a file read in the background, for readers that read them lazily */
+  static final int READ_AHEAD_ROWS = 1000;
+
+  private final Iterator<FileObject> files;
+  private final IJsonReader reader;
+  private final int depth;
+  private final int rangeNr;
+  private final int nrRanges;
+  private final boolean mapped;
+  private final ExecutorService executor;
+  private final Deque<PrefetchedInput> pending = new ArrayDeque<>();
+
+  /**
+   * @param rangeNr
+   *          byte range of each file to read, out of <code>nrRanges</code>; see {@link LineRangeInputStream}
+   * @param mapped
+   *          if local files can be read through memory mappings
+   */
+  public InputPrefetcher( Iterator<FileObject> files, IJsonReader reader, int depth, int rangeNr, int nrRanges,
+      boolean mapped, final String threadName ) {
+    this.files = files;
+    this.reader = reader;
+    this.depth = depth;
+    this.rangeNr = rangeNr;
+    this.nrRanges = nrRanges;
+    this.mapped = mapped;
+    this.executor = Executors.newFixedThreadPool( depth, new ThreadFactory() {
+      private final AtomicInteger threadNr = new AtomicInteger();
+
+      @Override
+      public Thread newThread( Runnable runnable ) {
+        Thread thread = new Thread( runnable, threadName + " " + threadNr.incrementAndGet() );
+        thread.setDaemon( true );
+        return thread;
+      }
+    } );
+    fill();
+  }
+
+  public boolean hasNext() {
+    return !pending.isEmpty();
+  }
+
+  /**
+   * @return the next file in list order, the parsing of a further one is started in its place
+   */
+  public PrefetchedInput next() {
+    PrefetchedInput next = pending.poll();
+    fill();
+    return next;
+  }
+
+  /**
+   * Stops the pool, discarding files not handed back yet.
+   */
+  public void close() {
+    executor.shutdownNow();
+    for ( PrefetchedInput input : pending ) {
+      input.discard();
+    }
+    pending.clear();
+  }
+
+  private void fill() {
+    while ( pending.size() < depth && files.hasNext() ) {
+      PrefetchedInput input = new PrefetchedInput( files.next() );
+      input.rowSet = executor.submit( input );
+      pending.add( input );
+    }
+  }
+
+  public class PrefetchedInput implements Callable<RowSet> {
+    private final FileObject file;
+    private Future<RowSet> rowSet;
+    private InputStream input;
+    private boolean discarded;
+
+    private PrefetchedInput( FileObject file ) {
+      this.file = file;
+    }
+
+    @Override
+    public RowSet call() throws FileSystemException, KettleException {
+      InputStream in = LineRangeInputStream.open( file, rangeNr, nrRanges, mapped );
+      if ( !setInput( in ) ) {
+        IOUtils.closeQuietly( in );
+        return null;
+      }
+      try {
+        RowSet rows = reader.parse( in );
+        return rows instanceof LazyRowSet ? new BufferedRowSet( rows, READ_AHEAD_ROWS ) : rows;
+      } catch ( KettleException | RuntimeException e ) {
+        closeInput();
+        throw e;
+      }
+    }
+
+    public FileObject getFile() {
+      return file;
+    }
+
+    /**
+     * @return stream the rows are read from, to be closed once they were all pulled; null if it couldn't be opened
+     */
+    public synchronized InputStream getInput() {
+      return input;
+    }
+
+    /**
+     * Waits for the file to be parsed.
+     *
+     * @throws FileSystemException
+     *           if the file couldn't be opened
+     * @throws KettleException
+     *           if it couldn't be parsed
+     */
+    public RowSet getRowSet() throws FileSystemException, KettleException {
+      try {
+        return rowSet.get();
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new KettleException( e );
+      } catch ( ExecutionException e ) {
+        Throwable cause = e.getCause();
+        if ( cause instanceof FileSystemException ) {
+          throw (FileSystemException) cause;
+        } else if ( cause instanceof KettleException ) {
+          throw (KettleException) cause;
+        } else if ( cause instanceof RuntimeException ) {
+          throw (RuntimeException) cause;
+        } else if ( cause instanceof Error ) {
+          throw (Error) cause;
+        }
+        throw new KettleException( cause );
+      }
+    }
+
+    /**
+     * Gives up on this file, releasing its stream.
+     */
+    public synchronized void discard() {
+      discarded = true;
+      if ( rowSet != null ) {
+        rowSet.cancel( false );
+      }
+      closeInput();
+    }
+
+    private synchronized void closeInput() {
+      IOUtils.closeQuietly( input );
+      input = null;
+    }
+
+    private synchronized boolean setInput( InputStream in ) {
+      if ( discarded ) {
+        return false;
+      }
+      input = in;
+      return true;
+    }
+  }
+
+}
@@ -22,11 +22,9 @@
 
 package org.pentaho.di.trans.steps.enhanced.jsoninput.reader;
 
-import java.io.IOException;
 import java.io.InputStream;
 import java.util.Iterator;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.pentaho.di.core.exception.KettleException;
@@ -53,30 +51,41 @@ public class InputsReader implements Iterable<InputStream> {
     this.errorHandler = errorHandler;
   }
 
+  /**
+   * @return contents of the files to read, either listed or named by the source field
+   */
   @Override
   public Iterator<InputStream> iterator() {
-    if ( !meta.isInFields() || meta.getIsAFile() ) {
-      Iterator<FileObject> files;
-      if ( meta.inputFiles.acceptingFilenames ) {
-        // paths from input
-        files = new FileNamesIterator( step, errorHandler, getFieldIterator() );
-      } else {
-        // from inner file list
-        if ( data.files == null ) {
-          data.files = meta.getFileInputList( step );
-        }
-        files = data.files.getFiles().listIterator( data.currentFileIndex );
-      }
-      return new FileContentIterator( files, data, errorHandler );
+    Iterator<FileObject> files;
+    if ( meta.inputFiles.acceptingFilenames ) {
+      // paths from input
+      files = new FileNamesIterator( step, errorHandler, getFieldIterator() );
     } else {
-      // direct content
-      return new ChainedIterator<InputStream, String>( getFieldIterator(), errorHandler ) {
-        protected InputStream tryNext() throws IOException {
-          String next = inner.next();
-          return next == null ? null : IOUtils.toInputStream( next, meta.getEncoding() );
-        }
-      };
+      // from inner file list
+      if ( data.files == null ) {
+        data.files = meta.getFileInputList( step );
+      }
+      files = data.files.getFiles().listIterator( data.currentFileIndex );
     }
+    return new FileContentIterator( files, data, errorHandler );
+  }
+
+  /**
+   * @return source field values holding the JSON text itself, as they are: no need to encode and decode them back
+   */
+  public Iterator<String> getFieldValues() {
+    return new ChainedIterator<String, String>( getFieldIterator(), errorHandler ) {
+      protected String tryNext() {
+        return inner.next();
+      }
+    };
+  }
+
+  /**
+   * @return the incoming rows, for source field values to be read from elsewhere
+   */
+  public Iterator<Object[]> getRowIterator() {
+    return new RowIterator( step, data, errorHandler );
   }
 
   protected StringFieldIterator getFieldIterator() {
@@ -151,7 +160,8 @@ public class InputsReader implements Iterable<InputStream> {
           data.file = inner.next();
           data.currentFileIndex++;
           if ( step.onNewFile( data.file ) ) {
-            return KettleVFS.getInputStream( data.file );
+            return LineRangeInputStream.open( data.file, InputsReader.this.data.rangeNr,
+                InputsReader.this.data.nrRanges, meta.isMemoryMappedFiles() );
           }
         } catch ( FileSystemException e ) {
           handler.fileOpenError( data.file, e );
@@ -0,0 +1,139 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.trans.steps.enhanced.jsoninput.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pentaho.di.trans.steps.enhanced.jsoninput.JsonInputMeta.JsonProviderType;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.InvalidJsonException;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.jayway.jsonpath.spi.json.JsonSmartJsonProvider;
+
+/**
+ * Creates the JSON parser backends documents can be read with. The Jackson ones are set to be about as lenient as
+ * json-smart, and give arrays as indexed lists.
+ */
+public class JsonProviders {
+
+  private JsonProviders() {
+  }
+
+  public static JsonProvider create( JsonProviderType type ) {
+    if ( type == null ) {
+      return new JsonSmartJsonProvider();
+    }
+    switch ( type ) {
+      case JACKSON:
+        return new JacksonProvider();
+      case JACKSON_STREAMING:
+        return new JacksonStreamingProvider();
+      default:
+        return new JsonSmartJsonProvider();
+    }
+  }
+
+  static JsonFactory createFactory() {
+    JsonFactory factory = new JsonFactory();
+    // be about as lenient as the default json-smart parser
+    factory.enable( JsonParser.Feature.ALLOW_SINGLE_QUOTES );
+    factory.enable( JsonParser.Feature.ALLOW_UNQUOTED_FIELD_NAMES );
+    factory.enable( JsonParser.Feature.ALLOW_NON_NUMERIC_NUMBERS );
+    return factory;
+  }
+
+  /**
+   * Jackson data binding. Documents can also be read from tokens, leaving out what a projection doesn't reach.
+   */
+  static class JacksonProvider extends JacksonJsonProvider {
+    private static final JsonFactory JSON_FACTORY = createFactory();
+
+    JacksonProvider() {
+      super( new ObjectMapper( createFactory() ) );
+    }
+
+    @Override
+    public List<Object> createArray() {
+      // JsonPath's own gives linked lists, read by index
+      return new ArrayList<>();
+    }
+
+    /**
+     * @param projection
+     *          parts of the document to read, all if null
+     */
+    Object parse( String json, Projection projection ) throws InvalidJsonException {
+      try ( JsonParser parser = JSON_FACTORY.createParser( json ) ) {
+        return readDocument( parser, projection );
+      } catch ( IOException e ) {
+        throw new InvalidJsonException( e );
+      }
+    }
+
+    /**
+     * @param projection
+     *          parts of the document to read, all if null
+     */
+    Object parse( InputStream in, String charset, Projection projection ) throws InvalidJsonException {
+      try ( JsonParser parser = StandardCharsets.UTF_8.name().equalsIgnoreCase( charset )
+          ? JSON_FACTORY.createParser( in )
+          : JSON_FACTORY.createParser( new InputStreamReader( in, charset ) ) ) {
+        return readDocument( parser, projection );
+      } catch ( IOException e ) {
+        throw new InvalidJsonException( e );
+      }
+    }
+
+    private Object readDocument( JsonParser parser, Projection projection ) throws IOException {
+      if ( parser.nextToken() == null ) {
+        throw new InvalidJsonException( "No JSON content" );
+      }
+      return StreamingJsonReader.readValue( parser, this, null, projection );
+    }
+  }
+
+  /**
+   * Jackson tokens read straight into maps and lists, with no data binding.
+   */
+  static class JacksonStreamingProvider extends JacksonProvider {
+
+    @Override
+    public Object parse( String json ) throws InvalidJsonException {
+      return parse( json, null );
+    }
+
+    @Override
+    public Object parse( InputStream in, String charset ) throws InvalidJsonException {
+      return parse( in, charset, null );
+    }
+  }
+
+}
@@ -0,0 +1,42 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.enhanced.jsoninput.reader;
+
+/**
+ * Thrown by reader row sets that parse while rows are being pulled, since {@link org.pentaho.di.core.RowSet#getRow()}
+ * can't throw checked exceptions. The cause is the actual parsing or path evaluation error.
+ */
+public class JsonReaderException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  public JsonReaderException( Exception cause ) {
+    super( cause.getMessage(), cause );
+  }
+
+  @Override
+  public synchronized Exception getCause() {
+    return (Exception) super.getCause();
+  }
+
+}
@@ -0,0 +1,188 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.enhanced.jsoninput.reader;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import org.pentaho.di.core.SingleRowRowSet;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.JsonInputField;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.JsonInputMeta;
+
+/**
+ * Row set that reads its input as rows are requested, one record at a time.<br>
+ * Errors can't be thrown from {@link #getRow()} as checked exceptions, they are thrown as {@link JsonReaderException}
+ * by the call that reaches them; {@link #size()} defers them to the next {@link #getRow()}.<br>
+ * Once the row limit is reached the rest of the input is left unread, and paths are only checked against the records
+ * read.
+ */
+abstract class LazyRowSet extends SingleRowRowSet {
+  private static Class<?> PKG = JsonInputMeta.class; // for i18n purposes, needed by Translator2!!
+
+  private final JsonInputField[] fields;
+  private final boolean ignoreMissingPath;
+  private final long rowLimit;
+  private final LogChannelInterface log;
+
+  private final Deque<Object[]> rows = new ArrayDeque<>();
+  private final boolean[] found;
+  private long rowCount;
+  private boolean done;
+  private JsonReaderException error;
+
+  /**
+   * @param rowLimit
+   *          rows to read at most, all if not positive
+   */
+  protected LazyRowSet( JsonInputField[] fields, boolean ignoreMissingPath, long rowLimit, LogChannelInterface log ) {
+    super();
+    this.fields = fields;
+    this.ignoreMissingPath = ignoreMissingPath;
+    this.rowLimit = rowLimit;
+    this.log = log;
+    this.found = new boolean[ fields.length ];
+  }
+
+  /**
+   * Reads the next record, adding its rows if any.
+   *
+   * @return false if there was nothing left to read
+   */
+  protected abstract boolean readNext() throws IOException, KettleException;
+
+  /**
+   * Releases the input once done with it.
+   */
+  protected abstract void closeInput() throws IOException;
+
+  /**
+   * Adds the rows of one record, given the values found for each field. A field with fewer values than the others gets
+   * nulls.
+   */
+  protected void addRecord( List<? extends List<?>> values ) {
+    int nbRows = 0;
+    for ( int i = 0; i < fields.length; i++ ) {
+      int size = values.get( i ).size();
+      if ( size > 0 ) {
+        found[ i ] = true;
+        nbRows = Math.max( nbRows, size );
+      }
+    }
+    if ( rowLimit > 0 ) {
+      nbRows = (int) Math.min( nbRows, rowLimit - rowCount );
+    }
+    for ( int r = 0; r < nbRows; r++ ) {
+      Object[] row = new Object[ fields.length ];
+      for ( int i = 0; i < fields.length; i++ ) {
+        List<?> fieldValues = values.get( i );
+        row[ i ] = r < fieldValues.size() ? fieldValues.get( r ) : null;
+      }
+      rows.add( row );
+    }
+    rowCount += nbRows;
+  }
+
+  protected LogChannelInterface getLog() {
+    return log;
+  }
+
+  @Override
+  public Object[] getRow() {
+    fetch();
+    if ( error != null ) {
+      JsonReaderException e = error;
+      error = null;
+      throw e;
+    }
+    return rows.poll();
+  }
+
+  @Override
+  public int size() {
+    fetch();
+    return rows.size();
+  }
+
+  @Override
+  public boolean isDone() {
+    return done && rows.isEmpty() && error == null;
+  }
+
+  @Override
+  public void clear() {
+    rows.clear();
+    close();
+  }
+
+  private void fetch() {
+    try {
+      while ( rows.isEmpty() && !done ) {
+        if ( rowLimit > 0 && rowCount >= rowLimit ) {
+          close();
+        } else if ( !readNext() ) {
+          close();
+          checkFound();
+        }
+      }
+    } catch ( IOException e ) {
+      close();
+      error = new JsonReaderException( e );
+    } catch ( KettleException e ) {
+      close();
+      error = new JsonReaderException( e );
+    }
+  }
+
+  private void close() {
+    if ( !done ) {
+      done = true;
+      try {
+        closeInput();
+      } catch ( IOException e ) {
+        if ( log.isDebug() ) {
+          log.logDebug( e.getLocalizedMessage(), e );
+        }
+      }
+    }
+  }
+
+  private void checkFound() throws KettleException {
+    if ( log.isDetailed() ) {
+      log.logDetailed( BaseMessages.getString( PKG, "JsonInput.Log.NrRecords", rowCount ) );
+    }
+    if ( !ignoreMissingPath ) {
+      for ( int i = 0; i < fields.length; i++ ) {
+        if ( !found[ i ] ) {
+          throw new KettleException(
+              BaseMessages.getString( PKG, "JsonReader.Error.CanNotFindPath", fields[ i ].getPath() ) );
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,101 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.enhanced.jsoninput.reader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.JsonInputField;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.JsonInputMeta;
+
+import com.jayway.jsonpath.ReadContext;
+
+/**
+ * Reads line-delimited JSON (JSON Lines, NDJSON): each line is a document of its own, read from the input only once
+ * the rows of the previous one were pulled. Compiled paths are shared by all lines; blank lines are skipped.<br>
+ * A field with fewer values than the others in a line gets nulls. A path must match in at least one line, unless
+ * missing paths are ignored.
+ */
+public class LineDelimitedJsonReader extends FastJsonReader {
+  private static Class<?> PKG = JsonInputMeta.class; // for i18n purposes, needed by Translator2!!
+
+  public LineDelimitedJsonReader( JsonInputField[] fields, boolean defaultPathLeafToNull, LogChannelInterface log )
+    throws KettleException {
+    super( fields, defaultPathLeafToNull, log );
+  }
+
+  @Override
+  public RowSet parse( InputStream in ) throws KettleException {
+    // JSON Lines are UTF-8 encoded
+    return new LineRowSet( new BufferedReader( new InputStreamReader( in, StandardCharsets.UTF_8 ) ) );
+  }
+
+  @Override
+  public RowSet parse( String json ) throws KettleException {
+    return new LineRowSet( new BufferedReader( new StringReader( json ) ) );
+  }
+
+  private class LineRowSet extends LazyRowSet {
+    private final BufferedReader reader;
+    private long lineNr;
+
+    LineRowSet( BufferedReader reader ) {
+      super( getFields(), isIgnoreMissingPath(), getRowLimit(), LineDelimitedJsonReader.this.getLog() );
+      this.reader = reader;
+    }
+
+    @Override
+    protected boolean readNext() throws IOException, KettleException {
+      String line;
+      while ( ( line = reader.readLine() ) != null ) {
+        lineNr++;
+        if ( line.trim().isEmpty() ) {
+          continue;
+        }
+        ReadContext context;
+        try {
+          context = readInput( line );
+        } catch ( RuntimeException e ) {
+          throw new KettleException( BaseMessages.getString( PKG, "JsonReader.Error.ParsingLine", lineNr ), e );
+        }
+        addRecord( evalPaths( context ) );
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    protected void closeInput() throws IOException {
+      reader.close();
+    }
+  }
+
+}
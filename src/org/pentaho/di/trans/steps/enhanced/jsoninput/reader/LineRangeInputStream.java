@@ -0,0 +1,196 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.trans.steps.enhanced.jsoninput.reader;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+
+/**
+ * Reads the lines of a byte range of a line-delimited input: the lines that start within the range, whole.<br>
+ * The line running over the range start belongs to the previous range, the one running over the range end is read
+ * up to its end. Ranges covering an input with no gaps so read each line exactly once.
+ */
+public class LineRangeInputStream extends FilterInputStream {
+
+  private final long start;
+  private final long end;
+
+  private long pos;
+  private boolean positioned;
+  private boolean lineStart = true;
+  private boolean done;
+
+  /**
+   * @param in
+   *          whole input, from its first byte
+   * @param start
+   *          first byte of the range
+   * @param end
+   *          byte after the range
+   */
+  public LineRangeInputStream( InputStream in, long start, long end ) {
+    super( in );
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * Opens range <code>rangeNr</code> of a file cut in <code>nrRanges</code> ranges of about the same size.
+   *
+   * @param mapped
+   *          if a local file can be read through memory mappings; see {@link MappedFileInputStream}
+   */
+  public static InputStream open( FileObject file, int rangeNr, int nrRanges, boolean mapped )
+    throws FileSystemException {
+    if ( nrRanges <= 1 ) {
+      return MappedFileInputStream.open( file, mapped );
+    }
+    long size = file.getContent().getSize();
+    long start = size / nrRanges * rangeNr + Math.min( rangeNr, size % nrRanges );
+    long end = size / nrRanges * ( rangeNr + 1 ) + Math.min( rangeNr + 1, size % nrRanges );
+    return new LineRangeInputStream( MappedFileInputStream.open( file, mapped ), start, end );
+  }
+
+  /**
+   * Skips to the first line starting at or after the range start.
+   */
+  private void position() throws IOException {
+    positioned = true;
+    if ( start == 0 ) {
+      return;
+    }
+    // a line starts at the range start if the byte before ends a line
+    long target = start - 1;
+    while ( pos < target ) {
+      long skipped = in.skip( target - pos );
+      if ( skipped <= 0 ) {
+        if ( in.read() < 0 ) {
+          done = true;
+          return;
+        }
+        skipped = 1;
+      }
+      pos += skipped;
+    }
+    int b;
+    while ( ( b = in.read() ) >= 0 ) {
+      pos++;
+      if ( b == '\n' ) {
+        return;
+      }
+    }
+    done = true;
+  }
+
+  private boolean isDone() throws IOException {
+    if ( !positioned ) {
+      position();
+    }
+    if ( pos >= end && lineStart ) {
+      done = true;
+    }
+    return done;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if ( isDone() ) {
+      return -1;
+    }
+    int b = in.read();
+    if ( b < 0 ) {
+      done = true;
+      return -1;
+    }
+    pos++;
+    lineStart = b == '\n';
+    return b;
+  }
+
+  @Override
+  public int read( byte[] b, int off, int len ) throws IOException {
+    if ( len == 0 ) {
+      return 0;
+    }
+    if ( isDone() ) {
+      return -1;
+    }
+    boolean inRange = pos < end;
+    int n = in.read( b, off, inRange ? (int) Math.min( len, end - pos ) : len );
+    if ( n <= 0 ) {
+      done = true;
+      return -1;
+    }
+    if ( !inRange ) {
+      // only the rest of the last line is left
+      for ( int i = off; i < off + n; i++ ) {
+        if ( b[ i ] == '\n' ) {
+          n = i - off + 1;
+          done = true;
+          break;
+        }
+      }
+    }
+    pos += n;
+    lineStart = b[ off + n - 1 ] == '\n';
+    return n;
+  }
+
+  @Override
+  public long skip( long n ) throws IOException {
+    byte[] buffer = new byte[ (int) Math.min( n, 8192 ) ];
+    long skipped = 0;
+    while ( skipped < n ) {
+      int read = read( buffer, 0, (int) Math.min( n - skipped, buffer.length ) );
+      if ( read < 0 ) {
+        break;
+      }
+      skipped += read;
+    }
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    // where the range ends is only known once its last line is read
+    return 0;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  @Override
+  public synchronized void mark( int readlimit ) {
+  }
+
+  @Override
+  public synchronized void reset() throws IOException {
+    throw new IOException( "mark/reset not supported" );
+  }
+
+}
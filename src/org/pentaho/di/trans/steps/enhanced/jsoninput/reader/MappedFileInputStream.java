@@ -0,0 +1,218 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.trans.steps.enhanced.jsoninput.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.pentaho.di.core.vfs.KettleVFS;
+
+/**
+ * Reads a local file through memory mappings, with no copy to heap buffers but the one to the caller's.<br>
+ * A mapping is at most <code>Integer.MAX_VALUE</code> bytes: bigger files are mapped a chunk at a time, the next
+ * chunk once the previous one was read. Skipping within the file maps no bytes in between.<br>
+ * A chunk is unmapped as soon as it was read, and on close, where the JVM allows it; otherwise only once it is
+ * collected, and until then the file can't be deleted on some platforms. Reads and close are synchronized, since
+ * reading an unmapped chunk would crash the JVM.
+ */
+public class MappedFileInputStream extends InputStream {
+
+  static final long CHUNK_SIZE = 1L << 30;
+
+  private final FileChannel channel;
+  private final long size;
+  private final long chunkSize;
+
+  private MappedByteBuffer chunk;
+  private long chunkStart;
+  /** position when no chunk is mapped */
+  private long position;
+
+  MappedFileInputStream( FileChannel channel, long chunkSize ) throws IOException {
+    this.channel = channel;
+    this.size = channel.size();
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Opens a file: mapped if allowed and it is local, through its VFS stream otherwise or if it can't be mapped.
+   */
+  public static InputStream open( FileObject file, boolean mapped ) throws FileSystemException {
+    if ( mapped && "file".equals( file.getName().getScheme() ) ) {
+      FileChannel channel = null;
+      try {
+        channel = FileChannel.open( Paths.get( KettleVFS.getFilename( file ) ), StandardOpenOption.READ );
+        return new MappedFileInputStream( channel, CHUNK_SIZE );
+      } catch ( IOException | RuntimeException e ) {
+        // errors are reported when opening the stream
+        closeQuietly( channel );
+      }
+    }
+    return KettleVFS.getInputStream( file );
+  }
+
+  private static void closeQuietly( FileChannel channel ) {
+    if ( channel != null ) {
+      try {
+        channel.close();
+      } catch ( IOException e ) {
+        // nothing read yet
+      }
+    }
+  }
+
+  private long getPosition() {
+    return chunk == null ? position : chunkStart + chunk.position();
+  }
+
+  /**
+   * @return false at end of file, true once there are bytes left in the mapped chunk
+   */
+  private boolean ensureChunk() throws IOException {
+    if ( chunk != null && chunk.hasRemaining() ) {
+      return true;
+    }
+    long pos = getPosition();
+    if ( pos >= size ) {
+      return false;
+    }
+    releaseChunk();
+    chunk = channel.map( MapMode.READ_ONLY, pos, Math.min( chunkSize, size - pos ) );
+    chunkStart = pos;
+    return true;
+  }
+
+  @Override
+  public synchronized int read() throws IOException {
+    return ensureChunk() ? chunk.get() & 0xFF : -1;
+  }
+
+  @Override
+  public synchronized int read( byte[] b, int off, int len ) throws IOException {
+    if ( len == 0 ) {
+      return 0;
+    }
+    if ( !ensureChunk() ) {
+      return -1;
+    }
+    int n = Math.min( len, chunk.remaining() );
+    chunk.get( b, off, n );
+    return n;
+  }
+
+  @Override
+  public synchronized long skip( long n ) throws IOException {
+    if ( n <= 0 ) {
+      return 0;
+    }
+    long pos = getPosition();
+    long skipped = Math.min( n, size - pos );
+    long target = pos + skipped;
+    if ( chunk != null && target <= chunkStart + chunk.limit() ) {
+      chunk.position( (int) ( target - chunkStart ) );
+    } else {
+      releaseChunk();
+      position = target;
+    }
+    return skipped;
+  }
+
+  @Override
+  public synchronized int available() {
+    return (int) Math.min( Integer.MAX_VALUE, size - getPosition() );
+  }
+
+  /**
+   * Closes the file, unmapping the current chunk.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    releaseChunk();
+    channel.close();
+  }
+
+  /**
+   * Unmaps the current chunk, keeping the position.
+   */
+  private void releaseChunk() {
+    if ( chunk != null ) {
+      position = getPosition();
+      MappedByteBuffer released = chunk;
+      chunk = null;
+      Unmapper.unmap( released );
+    }
+  }
+
+  /**
+   * Releases mappings right away, through the JVM internals that allow it: <code>Unsafe.invokeCleaner</code> from
+   * Java 9 on, the buffer cleaner before. Mappings are left to the garbage collector if neither can be reached.
+   */
+  private static class Unmapper {
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+      Object unsafe = null;
+      Method invokeCleaner = null;
+      try {
+        Class<?> unsafeClass = Class.forName( "sun.misc.Unsafe" );
+        invokeCleaner = unsafeClass.getMethod( "invokeCleaner", ByteBuffer.class );
+        Field theUnsafe = unsafeClass.getDeclaredField( "theUnsafe" );
+        theUnsafe.setAccessible( true );
+        unsafe = theUnsafe.get( null );
+      } catch ( Exception e ) {
+        // before Java 9
+        invokeCleaner = null;
+      }
+      UNSAFE = unsafe;
+      INVOKE_CLEANER = invokeCleaner;
+    }
+
+    static void unmap( MappedByteBuffer buffer ) {
+      try {
+        if ( INVOKE_CLEANER != null ) {
+          INVOKE_CLEANER.invoke( UNSAFE, buffer );
+          return;
+        }
+        Method getCleaner = buffer.getClass().getMethod( "cleaner" );
+        getCleaner.setAccessible( true );
+        Object cleaner = getCleaner.invoke( buffer );
+        if ( cleaner != null ) {
+          cleaner.getClass().getMethod( "clean" ).invoke( cleaner );
+        }
+      } catch ( Exception e ) {
+        // left to the garbage collector
+      }
+    }
+  }
+
+}
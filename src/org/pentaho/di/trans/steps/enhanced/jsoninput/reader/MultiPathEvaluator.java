@@ -0,0 +1,239 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.enhanced.jsoninput.reader;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.SimpleJsonPath.Step;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.Option;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+
+/**
+ * Evaluates several paths in a single traversal of a document tree.<br>
+ * The native steps of all paths are merged in a tree of steps, so that a node shared by several paths is only reached
+ * once. The JsonPath tail of a path, if any, is read from the node its steps lead to; a path that can't be split at all
+ * has its whole expression as tail, read from the root.<br>
+ * Values are returned in the order JsonPath would return them for each path on its own.
+ */
+class MultiPathEvaluator {
+
+  private static class Node {
+    private Map<String, Node> names;
+    private Map<Integer, Node> indexes;
+    private Node wildcard;
+    private Map<Step, Node> filters;
+    /** paths ending here */
+    private List<Integer> ends;
+    /** paths going on with a JsonPath tail from here */
+    private List<Integer> tails;
+
+    private Node child( Step step ) {
+      Node child;
+      switch ( step.getType() ) {
+        case NAME:
+          if ( names == null ) {
+            names = new LinkedHashMap<>();
+          }
+          child = names.get( step.getName() );
+          if ( child == null ) {
+            child = new Node();
+            names.put( step.getName(), child );
+          }
+          return child;
+        case INDEX:
+          if ( indexes == null ) {
+            indexes = new LinkedHashMap<>();
+          }
+          child = indexes.get( step.getIndex() );
+          if ( child == null ) {
+            child = new Node();
+            indexes.put( step.getIndex(), child );
+          }
+          return child;
+        case FILTER:
+          if ( filters == null ) {
+            filters = new LinkedHashMap<>();
+          }
+          child = filters.get( step );
+          if ( child == null ) {
+            child = new Node();
+            filters.put( step, child );
+          }
+          return child;
+        default:
+          if ( wildcard == null ) {
+            wildcard = new Node();
+          }
+          return wildcard;
+      }
+    }
+  }
+
+  private final Node root = new Node();
+  private final JsonPath[] tails;
+
+  /**
+   * @param steps
+   *          native steps of each path
+   * @param tails
+   *          JsonPath tail of each path, read from the node matched by its steps; null where there's none
+   */
+  MultiPathEvaluator( List<? extends List<Step>> steps, JsonPath[] tails ) {
+    this.tails = tails;
+    for ( int i = 0; i < tails.length; i++ ) {
+      Node node = root;
+      for ( Step step : steps.get( i ) ) {
+        node = node.child( step );
+      }
+      if ( tails[ i ] == null ) {
+        node.ends = add( node.ends, i );
+      } else {
+        node.tails = add( node.tails, i );
+      }
+    }
+  }
+
+  private static List<Integer> add( List<Integer> list, int idx ) {
+    List<Integer> result = list == null ? new ArrayList<Integer>( 1 ) : list;
+    result.add( idx );
+    return result;
+  }
+
+  /**
+   * @return the values selected by each path from <code>document</code>
+   */
+  List<List<?>> evaluate( Object document, Configuration configuration ) {
+    return evaluate( document, configuration, 0 );
+  }
+
+  /**
+   * @param limit
+   *          number of values needed from each path, all if not positive: the traversal stops once all paths have
+   *          that many
+   * @return the first values selected by each path from <code>document</code>, up to <code>limit</code>
+   */
+  List<List<?>> evaluate( Object document, Configuration configuration, long limit ) {
+    List<List<Object>> values = new ArrayList<>( tails.length );
+    for ( int i = 0; i < tails.length; i++ ) {
+      values.add( new ArrayList<>() );
+    }
+    boolean leafToNull = configuration.containsOption( Option.DEFAULT_PATH_LEAF_TO_NULL );
+    evaluate( root, document, configuration, configuration.jsonProvider(), leafToNull, limit, values );
+    List<List<?>> results = new ArrayList<>( values.size() );
+    for ( List<Object> pathValues : values ) {
+      results.add( limit > 0 && pathValues.size() > limit
+          ? new ArrayList<>( pathValues.subList( 0, (int) limit ) )
+          : pathValues );
+    }
+    return results;
+  }
+
+  private static boolean isFull( List<List<Object>> values, long limit ) {
+    if ( limit <= 0 ) {
+      return false;
+    }
+    for ( List<Object> pathValues : values ) {
+      if ( pathValues.size() < limit ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void evaluate( Node step, Object node, Configuration configuration, JsonProvider provider,
+      boolean leafToNull, long limit, List<List<Object>> values ) {
+    if ( step.ends != null ) {
+      for ( int idx : step.ends ) {
+        values.get( idx ).add( node );
+      }
+    }
+    if ( step.tails != null ) {
+      for ( int idx : step.tails ) {
+        List<?> res = tails[ idx ].read( node, configuration );
+        if ( res != null ) {
+          values.get( idx ).addAll( res );
+        }
+      }
+    }
+    if ( step.names != null && provider.isMap( node ) ) {
+      for ( Map.Entry<String, Node> name : step.names.entrySet() ) {
+        Object child = provider.getMapValue( node, name.getKey() );
+        if ( child != JsonProvider.UNDEFINED ) {
+          evaluate( name.getValue(), child, configuration, provider, leafToNull, limit, values );
+        } else if ( leafToNull && name.getValue().ends != null ) {
+          // only paths ending with this name get a null value, as with JsonPath
+          for ( int idx : name.getValue().ends ) {
+            values.get( idx ).add( null );
+          }
+        }
+      }
+    }
+    if ( step.indexes != null && provider.isArray( node ) ) {
+      int length = provider.length( node );
+      for ( Map.Entry<Integer, Node> index : step.indexes.entrySet() ) {
+        if ( index.getKey() < length ) {
+          evaluate( index.getValue(), provider.getArrayIndex( node, index.getKey() ), configuration, provider,
+              leafToNull, limit, values );
+        }
+      }
+    }
+    if ( step.wildcard != null ) {
+      if ( provider.isArray( node ) ) {
+        for ( int i = 0, len = provider.length( node ); i < len && !isFull( values, limit ); i++ ) {
+          evaluate( step.wildcard, provider.getArrayIndex( node, i ), configuration, provider, leafToNull, limit,
+              values );
+        }
+      } else if ( provider.isMap( node ) ) {
+        for ( String key : provider.getPropertyKeys( node ) ) {
+          if ( isFull( values, limit ) ) {
+            break;
+          }
+          evaluate( step.wildcard, provider.getMapValue( node, key ), configuration, provider, leafToNull, limit,
+              values );
+        }
+      }
+    }
+    if ( step.filters != null ) {
+      for ( Map.Entry<Step, Node> filter : step.filters.entrySet() ) {
+        if ( provider.isArray( node ) ) {
+          for ( int i = 0, len = provider.length( node ); i < len && !isFull( values, limit ); i++ ) {
+            Object element = provider.getArrayIndex( node, i );
+            if ( filter.getKey().accepts( element, configuration ) ) {
+              evaluate( filter.getValue(), element, configuration, provider, leafToNull, limit, values );
+            }
+          }
+        } else if ( provider.isMap( node ) && filter.getKey().accepts( node, configuration ) ) {
+          // an object is tested as a whole
+          evaluate( filter.getValue(), node, configuration, provider, leafToNull, limit, values );
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,78 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.enhanced.jsoninput.reader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.pentaho.di.trans.steps.enhanced.jsoninput.JsonInputField;
+
+/**
+ * Plans compiled from field paths, kept for readers built later with the same paths: a transformation run again and
+ * again, or run by several step copies, compiles its paths once.<br>
+ * A plan is keyed by the paths of all the fields, in order, by whether each field is read as raw JSON, and by the
+ * reader options it depends on. The least recently used plans are dropped past a given number. Plans are shared by readers on any thread, and must not be
+ * changed once compiled.
+ */
+class PathPlanCache<P> {
+
+  private final int maxPlans;
+  private final LinkedHashMap<List<Object>, P> plans = new LinkedHashMap<>( 16, 0.75f, true );
+
+  PathPlanCache( int maxPlans ) {
+    this.maxPlans = maxPlans;
+  }
+
+  /**
+   * @return key of the plan for the given fields and options
+   */
+  static List<Object> key( JsonInputField[] fields, Object... options ) {
+    List<Object> key = new ArrayList<>( 2 * fields.length + options.length );
+    key.addAll( Arrays.asList( options ) );
+    for ( JsonInputField field : fields ) {
+      key.add( field.getPath() );
+      key.add( field.isRawJson() );
+    }
+    return key;
+  }
+
+  /**
+   * @return the plan kept under this key, null if there is none
+   */
+  synchronized P get( List<Object> key ) {
+    return plans.get( key );
+  }
+
+  synchronized void put( List<Object> key, P plan ) {
+    plans.put( key, plan );
+    Iterator<P> eldest = plans.values().iterator();
+    while ( plans.size() > maxPlans ) {
+      eldest.next();
+      eldest.remove();
+    }
+  }
+}
@@ -0,0 +1,233 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.enhanced.jsoninput.reader;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.SimpleJsonPath.Step;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.SimpleJsonPath.StepType;
+
+/**
+ * The parts of a document a set of paths can reach, so that a parser can skip the others without building them.<br>
+ * The value a path ends at is needed whole, as is the node a JsonPath tail starts from. Within an object, only the
+ * members named by a step (or all of them, under a wildcard) are needed; within an array, only the elements at a
+ * step index. Skipped array elements before a needed one are kept as nulls, so that positions don't change; objects
+ * and arrays themselves are always kept, if emptied.<br>
+ * A filter needs the members it reads on top of what follows it, in each array element as in an object itself.<br>
+ * A value only raw paths end at, which no other path reads, is needed as text alone: it can be skipped over as well,
+ * as long as its place in the input is kept.
+ */
+class Projection {
+
+  private boolean whole;
+  /** if a raw path ends here */
+  private boolean text;
+  private Map<String, Projection> names;
+  private Map<Integer, Projection> indexes;
+  private Projection wildcard;
+  /** position of the last array element needed */
+  private int lastIndex = -1;
+
+  private Projection() {
+  }
+
+  /**
+   * @param steps
+   *          native steps of each path, the rest of which (if any) is a JsonPath tail
+   * @return what the paths can reach from the node their steps start from; null if it's needed whole
+   */
+  static Projection compile( List<? extends List<Step>> steps ) {
+    return compile( steps, null );
+  }
+
+  /**
+   * @param steps
+   *          native steps of each path, the rest of which (if any) is a JsonPath tail
+   * @param raw
+   *          paths with no tail that only need the text of the value they end at, by position; none if null
+   * @return what the paths can reach from the node their steps start from; null if it's needed whole
+   */
+  static Projection compile( List<? extends List<Step>> steps, boolean[] raw ) {
+    Projection root = new Projection();
+    for ( int i = 0; i < steps.size(); i++ ) {
+      root.add( steps.get( i ), 0, raw != null && i < raw.length && raw[ i ] );
+    }
+    root.complete();
+    return root.whole ? null : root;
+  }
+
+  /**
+   * Adds what the given steps reach from this node, from step <code>from</code> on.
+   */
+  private void add( List<Step> steps, int from, boolean raw ) {
+    if ( from == steps.size() ) {
+      if ( raw ) {
+        text = true;
+      } else {
+        // a tail may read anything under its node
+        whole = true;
+      }
+      return;
+    }
+    Step step = steps.get( from );
+    if ( step.getType() != StepType.FILTER ) {
+      child( step ).add( steps, from + 1, raw );
+      return;
+    }
+    // objects are tested as they are, arrays element by element
+    for ( Projection candidate : new Projection[] { this, child( Step.wildcard() ) } ) {
+      candidate.add( steps, from + 1, raw );
+      for ( List<Step> reference : step.getReferences() ) {
+        candidate.add( reference, 0, false );
+      }
+    }
+  }
+
+  private Projection child( Step step ) {
+    Projection child;
+    switch ( step.getType() ) {
+      case NAME:
+        if ( names == null ) {
+          names = new HashMap<>();
+        }
+        child = names.get( step.getName() );
+        if ( child == null ) {
+          child = new Projection();
+          names.put( step.getName(), child );
+        }
+        return child;
+      case INDEX:
+        if ( indexes == null ) {
+          indexes = new HashMap<>();
+        }
+        child = indexes.get( step.getIndex() );
+        if ( child == null ) {
+          child = new Projection();
+          indexes.put( step.getIndex(), child );
+        }
+        return child;
+      default:
+        if ( wildcard == null ) {
+          wildcard = new Projection();
+        }
+        return wildcard;
+    }
+  }
+
+  /**
+   * Adds a copy of what <code>other</code> reaches to this.
+   */
+  private void merge( Projection other ) {
+    if ( other.whole ) {
+      whole = true;
+    }
+    if ( other.text ) {
+      text = true;
+    }
+    if ( other.names != null ) {
+      for ( Map.Entry<String, Projection> name : other.names.entrySet() ) {
+        child( Step.name( name.getKey() ) ).merge( name.getValue() );
+      }
+    }
+    if ( other.indexes != null ) {
+      for ( Map.Entry<Integer, Projection> index : other.indexes.entrySet() ) {
+        child( Step.index( index.getKey() ) ).merge( index.getValue() );
+      }
+    }
+    if ( other.wildcard != null ) {
+      child( Step.wildcard() ).merge( other.wildcard );
+    }
+  }
+
+  /**
+   * Makes each named or indexed child include what the wildcard reaches, since it matches them too.
+   */
+  private void complete() {
+    if ( whole ) {
+      names = null;
+      indexes = null;
+      wildcard = null;
+      return;
+    }
+    if ( names != null ) {
+      for ( Projection child : names.values() ) {
+        if ( wildcard != null ) {
+          child.merge( wildcard );
+        }
+        child.complete();
+      }
+    }
+    if ( indexes != null ) {
+      for ( Map.Entry<Integer, Projection> index : indexes.entrySet() ) {
+        if ( wildcard != null ) {
+          index.getValue().merge( wildcard );
+        }
+        index.getValue().complete();
+        lastIndex = Math.max( lastIndex, index.getKey() );
+      }
+    }
+    if ( wildcard != null ) {
+      wildcard.complete();
+      lastIndex = Integer.MAX_VALUE;
+    }
+  }
+
+  /**
+   * @return if the whole value is needed
+   */
+  boolean isWhole() {
+    return whole;
+  }
+
+  /**
+   * @return if only the input text of the value is needed
+   */
+  boolean isTextOnly() {
+    return text && !whole && names == null && indexes == null && wildcard == null;
+  }
+
+  /**
+   * @return what is needed in the object member with the given name, null if it can be skipped
+   */
+  Projection member( String name ) {
+    Projection child = names == null ? null : names.get( name );
+    return child == null ? wildcard : child;
+  }
+
+  /**
+   * @return what is needed in the array element at the given position, null if it can be skipped
+   */
+  Projection element( int position ) {
+    Projection child = indexes == null ? null : indexes.get( position );
+    return child == null ? wildcard : child;
+  }
+
+  /**
+   * @return if no array element is needed from the given position on
+   */
+  boolean isPastLastElement( int position ) {
+    return position > lastIndex;
+  }
+}
@@ -0,0 +1,120 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.trans.steps.enhanced.jsoninput.reader;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Keeps the bytes read through it, from a position the reader moves forward, so that spans of the input can be taken
+ * back verbatim once parsed.<br>
+ * Positions are counted as the parser counts them: from the first byte after a UTF-8 byte order mark, if any.
+ */
+class RecordingInputStream extends FilterInputStream implements StreamingJsonReader.RecordedInput {
+
+  private byte[] buffer = new byte[ 8192 ];
+  private int count;
+  /** input position of the first byte in the buffer */
+  private long bufferStart;
+  /** bytes before this input position are no longer needed */
+  private long keepFrom;
+
+  RecordingInputStream( InputStream in ) {
+    super( in );
+  }
+
+  /**
+   * Bytes before <code>position</code> can be dropped.
+   */
+  @Override
+  public void release( long position ) {
+    keepFrom = Math.max( keepFrom, position );
+  }
+
+  /**
+   * @return bytes from <code>start</code> to <code>end</code>, decoded as UTF-8; null if they were released
+   */
+  @Override
+  public String getText( long start, long end ) {
+    if ( start < bufferStart || end > bufferStart + count || start > end ) {
+      return null;
+    }
+    return new String( buffer, (int) ( start - bufferStart ), (int) ( end - start ), StandardCharsets.UTF_8 );
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = in.read();
+    if ( b >= 0 ) {
+      ensureCapacity( 1 );
+      buffer[ count++ ] = (byte) b;
+    }
+    return b;
+  }
+
+  @Override
+  public int read( byte[] b, int off, int len ) throws IOException {
+    int n = in.read( b, off, len );
+    if ( n > 0 ) {
+      if ( bufferStart == 0 && count == 0 && n >= 3
+          && b[ off ] == (byte) 0xEF && b[ off + 1 ] == (byte) 0xBB && b[ off + 2 ] == (byte) 0xBF ) {
+        bufferStart = -3;
+      }
+      ensureCapacity( n );
+      System.arraycopy( b, off, buffer, count, n );
+      count += n;
+    }
+    return n;
+  }
+
+  @Override
+  public long skip( long n ) throws IOException {
+    // skipped bytes must be kept as well
+    byte[] skipped = new byte[ (int) Math.min( n, 8192 ) ];
+    int read = n > 0 ? read( skipped, 0, skipped.length ) : 0;
+    return Math.max( read, 0 );
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  private void ensureCapacity( int n ) {
+    if ( count + n <= buffer.length ) {
+      return;
+    }
+    int drop = (int) Math.min( count, Math.max( 0, keepFrom - bufferStart ) );
+    if ( drop > 0 ) {
+      System.arraycopy( buffer, drop, buffer, 0, count - drop );
+      count -= drop;
+      bufferStart += drop;
+    }
+    if ( count + n > buffer.length ) {
+      buffer = Arrays.copyOf( buffer, Math.max( buffer.length * 2, count + n ) );
+    }
+  }
+
+}
@@ -23,52 +23,125 @@
 package org.pentaho.di.trans.steps.enhanced.jsoninput.reader;
 
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Map;
 
 import org.codehaus.jackson.map.ObjectMapper;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleValueException;
-import org.pentaho.di.core.logging.LogChannelInterface;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.trans.steps.enhanced.jsoninput.JsonInputData;
 
 /**
- * Converts raw reader to output row values
+ * Converts raw reader to output row values.<br>
+ * A converter is built once for each field, from its output type. Values that already are of the output type, or
+ * of a JSON type it holds with no loss, are converted directly; others through their string form, as read from text.
  */
 public class RowOutputConverter {
 
-    private final LogChannelInterface log;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
 
-    public RowOutputConverter(LogChannelInterface log) {
-        this.log = log;
+    private final ValueConverter[] converters;
+
+    /**
+     * @param data
+     *            output and conversion metadata must be set
+     */
+    public RowOutputConverter(JsonInputData data) {
+        converters = new ValueConverter[data.nrInputFields];
+        for (int i = 0; i < converters.length; i++) {
+            int outIdx = data.totalpreviousfields + i;
+            converters[i] =
+                    createConverter(data.outputRowMeta.getValueMeta(outIdx), data.convertRowMeta.getValueMeta(outIdx));
+        }
     }
 
-    private Object getValue(ValueMetaInterface targetMeta, ValueMetaInterface strConvertMeta, Object value)
-            throws KettleValueException {
-        if (targetMeta.isNumeric()) {
-            try {
-                // attempt direct conversion
-                return targetMeta.getNativeDataType(value);
-            } catch (KettleValueException e) {
-                if (log.isDebug()) {
-                    log.logDebug(e.getLocalizedMessage(), e);
-                }
-            }
+    private abstract static class ValueConverter {
+        private final ValueMetaInterface targetMeta;
+        private final ValueMetaInterface strConvertMeta;
+
+        ValueConverter(ValueMetaInterface targetMeta, ValueMetaInterface strConvertMeta) {
+            this.targetMeta = targetMeta;
+            this.strConvertMeta = strConvertMeta;
+        }
+
+        abstract Object convert(Object value) throws KettleValueException;
+
+        protected Object convertFromString(Object value) throws KettleValueException {
+            String strValue = getStringValue(value);
+            return targetMeta.convertDataFromString(strValue, strConvertMeta, null, null, targetMeta.getTrimType());
+        }
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+    }
+
+    private static ValueConverter createConverter(ValueMetaInterface targetMeta, ValueMetaInterface strConvertMeta) {
+        switch (targetMeta.getType()) {
+            case ValueMetaInterface.TYPE_INTEGER:
+                return new ValueConverter(targetMeta, strConvertMeta) {
+                    @Override
+                    Object convert(Object value) throws KettleValueException {
+                        if (value == null || value instanceof Long) {
+                            return value;
+                        }
+                        return isIntegral(value) ? Long.valueOf(((Number) value).longValue())
+                                : convertFromString(value);
+                    }
+                };
+            case ValueMetaInterface.TYPE_NUMBER:
+                return new ValueConverter(targetMeta, strConvertMeta) {
+                    @Override
+                    Object convert(Object value) throws KettleValueException {
+                        if (value == null || value instanceof Double) {
+                            return value;
+                        }
+                        return isIntegral(value) ? Double.valueOf(((Number) value).doubleValue())
+                                : convertFromString(value);
+                    }
+                };
+            case ValueMetaInterface.TYPE_BIGNUMBER:
+                return new ValueConverter(targetMeta, strConvertMeta) {
+                    @Override
+                    Object convert(Object value) throws KettleValueException {
+                        if (value == null || value instanceof BigDecimal) {
+                            return value;
+                        }
+                        if (isIntegral(value)) {
+                            return BigDecimal.valueOf(((Number) value).longValue());
+                        }
+                        return value instanceof BigInteger ? new BigDecimal((BigInteger) value)
+                                : convertFromString(value);
+                    }
+                };
+            case ValueMetaInterface.TYPE_BOOLEAN:
+                return new ValueConverter(targetMeta, strConvertMeta) {
+                    @Override
+                    Object convert(Object value) throws KettleValueException {
+                        return value instanceof Boolean ? value : convertFromString(value);
+                    }
+                };
+            default:
+                return new ValueConverter(targetMeta, strConvertMeta) {
+                    @Override
+                    Object convert(Object value) throws KettleValueException {
+                        return convertFromString(value);
+                    }
+                };
         }
-        // convert from string
-        String strValue = getStringValue(value);
-        return targetMeta.convertDataFromString(strValue, strConvertMeta, null, null, targetMeta.getTrimType());
     }
 
-    private String getStringValue(Object jo) throws KettleValueException {
+    private static String getStringValue(Object jo) throws KettleValueException {
         String nodevalue = null;
         if (jo != null) {
-            if (jo instanceof Map) {
-                @SuppressWarnings("unchecked")
-                Map<String, ?> asStrMap = (Map<String, ?>) jo;
+            if (jo instanceof Map || jo.getClass() == ArrayList.class) {
+                // plain lists, as given by Jackson parsers, don't print as JSON
                 try {
-                    nodevalue = new ObjectMapper().writeValueAsString(asStrMap);
+                    nodevalue = MAPPER.writeValueAsString(jo);
                 } catch (IOException e) {
                     // TODO : Manage Exception Properly
                     throw new KettleValueException(e);
@@ -86,9 +159,7 @@ public class RowOutputConverter {
         }
         for (int i = 0; i < rawPartRow.length; i++) {
             int outIdx = data.totalpreviousfields + i;
-            Object val =
-                    getValue(data.outputRowMeta.getValueMeta(outIdx), data.convertRowMeta.getValueMeta(outIdx),
-                            rawPartRow[i]);
+            Object val = converters[i].convert(rawPartRow[i]);
             rawPartRow[i] = val;
             if (val == null && data.repeatedFields.get(i) && data.previousRow != null) {
                 rawPartRow[i] = data.previousRow[outIdx];
@@ -0,0 +1,454 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.enhanced.jsoninput.reader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+
+/**
+ * Splits a JsonPath expression into the leading steps that can be navigated without a document tree (child names,
+ * array indexes, wildcards and simple filters) and a JsonPath tail holding whatever is left (deep scan, other
+ * filters, slices, unions, functions). The tail, if any, is meant to be evaluated by JsonPath against the node matched
+ * by the steps.<br>
+ * A simple filter tests a single member of the current node, e.g. <code>[?(@.type == 'purchase')]</code> or
+ * <code>[?(@.id)]</code>: the members it reads are known, so the rest of a candidate node needn't be read to test it.
+ */
+public class SimpleJsonPath {
+
+  public enum StepType {
+    NAME, INDEX, WILDCARD, FILTER
+  }
+
+  public static class Step {
+    private final StepType type;
+    private final String name;
+    private final int index;
+    /** for filters, the filter applied to a single element array */
+    private final JsonPath filter;
+    /** for filters, the steps to the members read */
+    private final List<List<Step>> references;
+
+    private Step( StepType type, String name, int index ) {
+      this( type, name, index, null, null );
+    }
+
+    private Step( StepType type, String name, int index, JsonPath filter, List<List<Step>> references ) {
+      this.type = type;
+      this.name = name;
+      this.index = index;
+      this.filter = filter;
+      this.references = references;
+    }
+
+    public static Step name( String name ) {
+      return new Step( StepType.NAME, name, -1 );
+    }
+
+    public static Step index( int index ) {
+      return new Step( StepType.INDEX, null, index );
+    }
+
+    public static Step wildcard() {
+      return new Step( StepType.WILDCARD, null, -1 );
+    }
+
+    /**
+     * @param expression
+     *          the filter expression, e.g. <code>?(@.type == 'purchase')</code>
+     * @param references
+     *          steps to the members the expression reads, names only
+     */
+    static Step filter( String expression, List<List<Step>> references ) {
+      return new Step( StepType.FILTER, expression, -1, JsonPath.compile( ROOT + "[" + expression + "]" ),
+          Collections.unmodifiableList( references ) );
+    }
+
+    public StepType getType() {
+      return type;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getIndex() {
+      return index;
+    }
+
+    /**
+     * @return for filters, the steps to the members the filter reads
+     */
+    public List<List<Step>> getReferences() {
+      return references;
+    }
+
+    /**
+     * @return if this step selects the object member with the given name
+     */
+    public boolean matchesName( String memberName ) {
+      return type == StepType.WILDCARD || ( type == StepType.NAME && name.equals( memberName ) );
+    }
+
+    /**
+     * @return if this step selects the array element at the given position; for filters, if it is a candidate that
+     *         {@link #accepts(Object, Configuration) accepts} must be asked about
+     */
+    public boolean matchesIndex( int position ) {
+      return type == StepType.WILDCARD || type == StepType.FILTER || ( type == StepType.INDEX && index == position );
+    }
+
+    /**
+     * Tests a node against a filter step, as JsonPath would: array elements are tested one by one, other nodes as
+     * they are.
+     *
+     * @return if the filter selects the node
+     */
+    public boolean accepts( Object node, Configuration configuration ) {
+      JsonProvider provider = configuration.jsonProvider();
+      Object array = provider.createArray();
+      provider.setArrayIndex( array, 0, node );
+      List<?> selected = filter.read( array, configuration );
+      return selected != null && !selected.isEmpty();
+    }
+
+    @Override
+    public boolean equals( Object obj ) {
+      if ( !( obj instanceof Step ) ) {
+        return false;
+      }
+      Step other = (Step) obj;
+      return type == other.type && index == other.index
+          && ( name == null ? other.name == null : name.equals( other.name ) );
+    }
+
+    @Override
+    public int hashCode() {
+      return type.hashCode() * 31 + ( name == null ? index : name.hashCode() );
+    }
+
+    @Override
+    public String toString() {
+      switch ( type ) {
+        case NAME:
+          return "['" + name + "']";
+        case INDEX:
+          return "[" + index + "]";
+        case FILTER:
+          return "[" + name + "]";
+        default:
+          return "[*]";
+      }
+    }
+  }
+
+  private static final String ROOT = "$";
+  private static final String CURRENT = "@";
+  private static final String RESERVED_NAME_CHARS = "$@.[]()'\"*?,:=<>!&|\\";
+
+  private static final String REFERENCE = "@(?:\\.[^\\s$@.\\[\\]()'\"*?,:=<>!&|\\\\]+|\\[\\s*'[^'\"\\\\\\]]*'\\s*\\])+";
+  private static final String LITERAL =
+      "-?\\d+(?:\\.\\d+)?(?:[eE][+-]?\\d+)?|'[^'\\\\]*'|\"[^\"\\\\]*\"|true|false|null";
+  /** a member reference, maybe compared with a literal */
+  private static final Pattern SIMPLE_FILTER =
+      Pattern.compile( "\\?\\(\\s*(" + REFERENCE + ")\\s*(?:(?:==|!=|<=|>=|<|>)\\s*(?:" + LITERAL + ")\\s*)?\\)" );
+
+  private final String path;
+  private final List<Step> steps;
+  private final String tail;
+
+  private SimpleJsonPath( String path, List<Step> steps, String tail ) {
+    this.path = path;
+    this.steps = Collections.unmodifiableList( steps );
+    this.tail = tail;
+  }
+
+  /**
+   * @return the original path
+   */
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * @return the leading steps that can be navigated natively
+   */
+  public List<Step> getSteps() {
+    return steps;
+  }
+
+  /**
+   * @return JsonPath expression for the remainder of the path, relative to the node matched by all steps; null if the
+   *         whole path is made of steps
+   */
+  public String getTail() {
+    return tail;
+  }
+
+  /**
+   * @return number of leading steps shared by all paths
+   */
+  public static int commonPrefix( SimpleJsonPath[] paths ) {
+    if ( paths.length == 0 ) {
+      return 0;
+    }
+    List<Step> first = paths[ 0 ].getSteps();
+    int common = first.size();
+    for ( int i = 1; i < paths.length; i++ ) {
+      List<Step> steps = paths[ i ].getSteps();
+      int len = Math.min( common, steps.size() );
+      common = 0;
+      while ( common < len && first.get( common ).equals( steps.get( common ) ) ) {
+        common++;
+      }
+    }
+    return common;
+  }
+
+  /**
+   * Iterates, in document order, over the nodes selected by the given steps, without collecting them first.
+   */
+  static class NodeIterator implements Iterator<Object> {
+    private final JsonProvider provider;
+    private final List<Step> steps;
+    /** per step, the candidate nodes for it */
+    private final Iterator<?>[] levels;
+    private int depth;
+    private Object next;
+    private boolean hasNext;
+
+    NodeIterator( JsonProvider provider, Object root, List<Step> steps ) {
+      this.provider = provider;
+      this.steps = steps;
+      this.levels = new Iterator<?>[ steps.size() + 1 ];
+      this.levels[ 0 ] = Collections.singletonList( root ).iterator();
+      advance();
+    }
+
+    private void advance() {
+      hasNext = false;
+      while ( depth >= 0 ) {
+        if ( !levels[ depth ].hasNext() ) {
+          levels[ depth-- ] = null;
+          continue;
+        }
+        Object node = levels[ depth ].next();
+        if ( depth == steps.size() ) {
+          next = node;
+          hasNext = true;
+          return;
+        }
+        Iterator<?> children = children( node, steps.get( depth ) );
+        if ( children != null ) {
+          levels[ ++depth ] = children;
+        }
+      }
+      next = null;
+    }
+
+    private Iterator<?> children( Object node, Step step ) {
+      switch ( step.getType() ) {
+        case NAME:
+          if ( provider.isMap( node ) ) {
+            Object child = provider.getMapValue( node, step.getName() );
+            if ( child != JsonProvider.UNDEFINED ) {
+              return Collections.singletonList( child ).iterator();
+            }
+          }
+          return null;
+        case INDEX:
+          if ( provider.isArray( node ) && step.getIndex() < provider.length( node ) ) {
+            return Collections.singletonList( provider.getArrayIndex( node, step.getIndex() ) ).iterator();
+          }
+          return null;
+        default:
+          if ( provider.isArray( node ) ) {
+            return provider.toIterable( node ).iterator();
+          } else if ( provider.isMap( node ) ) {
+            List<Object> values = new ArrayList<>();
+            for ( String key : provider.getPropertyKeys( node ) ) {
+              values.add( provider.getMapValue( node, key ) );
+            }
+            return values.iterator();
+          }
+          return null;
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return hasNext;
+    }
+
+    @Override
+    public Object next() {
+      if ( !hasNext ) {
+        throw new NoSuchElementException();
+      }
+      Object node = next;
+      advance();
+      return node;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  public static SimpleJsonPath parse( String path ) {
+    List<Step> steps = new ArrayList<>();
+    if ( path == null || !path.startsWith( ROOT ) ) {
+      return new SimpleJsonPath( path, steps, path );
+    }
+    final int len = path.length();
+    int pos = ROOT.length();
+    while ( pos < len ) {
+      int next = -1;
+      Step step = null;
+      char c = path.charAt( pos );
+      if ( c == '.' && pos + 1 < len ) {
+        char d = path.charAt( pos + 1 );
+        if ( d == '*' ) {
+          step = Step.wildcard();
+          next = pos + 2;
+        } else if ( d == '[' ) {
+          // dot-bracket notation: .['name']
+          next = pos + 1;
+        } else {
+          int end = pos + 1;
+          while ( end < len && isNameChar( path.charAt( end ) ) ) {
+            end++;
+          }
+          if ( end > pos + 1 && ( end == len || path.charAt( end ) == '.' || path.charAt( end ) == '[' ) ) {
+            step = Step.name( path.substring( pos + 1, end ) );
+            next = end;
+          }
+        }
+        if ( next == pos + 1 ) {
+          int close = findClose( path, next );
+          step = close < 0 ? null : parseBracket( path.substring( next + 1, close ) );
+          next = close + 1;
+        }
+      } else if ( c == '[' ) {
+        int close = findClose( path, pos );
+        step = close < 0 ? null : parseBracket( path.substring( pos + 1, close ) );
+        next = close + 1;
+      }
+      if ( step == null ) {
+        break;
+      }
+      steps.add( step );
+      pos = next;
+    }
+    if ( pos == len ) {
+      return new SimpleJsonPath( path, steps, null );
+    }
+    String tail = ROOT + path.substring( pos );
+    if ( tail.indexOf( '$', ROOT.length() ) >= 0 ) {
+      // the remainder refers back to the document root, it can only be evaluated from there
+      return new SimpleJsonPath( path, new ArrayList<Step>(), path );
+    }
+    return new SimpleJsonPath( path, steps, tail );
+  }
+
+  /**
+   * @return position of the bracket closing the one at <code>open</code>, skipping quoted text and nested brackets;
+   *         -1 if there's none
+   */
+  private static int findClose( String path, int open ) {
+    int depth = 0;
+    char quote = 0;
+    for ( int i = open; i < path.length(); i++ ) {
+      char c = path.charAt( i );
+      if ( quote != 0 ) {
+        if ( c == '\\' ) {
+          i++;
+        } else if ( c == quote ) {
+          quote = 0;
+        }
+      } else if ( c == '\'' || c == '"' ) {
+        quote = c;
+      } else if ( c == '[' || c == '(' ) {
+        depth++;
+      } else if ( ( c == ']' || c == ')' ) && --depth == 0 ) {
+        return c == ']' ? i : -1;
+      }
+    }
+    return -1;
+  }
+
+  private static Step parseBracket( String content ) {
+    String inner = content.trim();
+    if ( inner.equals( "*" ) ) {
+      return Step.wildcard();
+    }
+    Matcher filter = SIMPLE_FILTER.matcher( inner );
+    if ( filter.matches() ) {
+      SimpleJsonPath reference = parse( ROOT + filter.group( 1 ).substring( CURRENT.length() ) );
+      if ( reference.getTail() == null ) {
+        return Step.filter( inner, Collections.singletonList( reference.getSteps() ) );
+      }
+      return null;
+    }
+    if ( inner.length() > 0 && inner.length() < 10 && isDigits( inner ) ) {
+      return Step.index( Integer.parseInt( inner ) );
+    }
+    if ( inner.length() >= 2 ) {
+      char quote = inner.charAt( 0 );
+      if ( ( quote == '\'' || quote == '"' ) && inner.charAt( inner.length() - 1 ) == quote ) {
+        String name = inner.substring( 1, inner.length() - 1 );
+        if ( name.indexOf( '\'' ) < 0 && name.indexOf( '"' ) < 0 && name.indexOf( '\\' ) < 0 ) {
+          return Step.name( name );
+        }
+      }
+    }
+    return null;
+  }
+
+  private static boolean isDigits( String str ) {
+    for ( int i = 0; i < str.length(); i++ ) {
+      if ( !Character.isDigit( str.charAt( i ) ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isNameChar( char c ) {
+    return !Character.isWhitespace( c ) && RESERVED_NAME_CHARS.indexOf( c ) < 0;
+  }
+
+  @Override
+  public String toString() {
+    return path;
+  }
+}
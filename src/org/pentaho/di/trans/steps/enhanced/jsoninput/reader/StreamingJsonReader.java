@@ -0,0 +1,515 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.enhanced.jsoninput.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.JsonInputField;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.SimpleJsonPath.Step;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.SimpleJsonPath.StepType;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.Option;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+
+/**
+ * Evaluates the field paths over a Jackson token stream instead of a whole document tree.<br>
+ * The path prefix shared by all fields (e.g. <code>$.data.items[*]</code>) selects the records; each record is
+ * materialized on its own, as soon as it is read, and the rest of every field path is evaluated against it. Heap use
+ * is thus bound by record size rather than by document size. Members and elements of a record no field path can
+ * reach are skipped over by the parser, with no value built. Several root values in a row (concatenated documents)
+ * are read one after the other.<br>
+ * A simple filter in the record path (e.g. <code>$.events[?(@.type == 'purchase')]</code>) ends it: each candidate
+ * record is read as far as the filter and the rest of the field paths need, and is dropped unless it passes.<br>
+ * Rows are built per record: a field with fewer values than the others in a record gets nulls.<br>
+ * Objects and arrays selected by {@link JsonInputField#isRawJson() raw JSON} fields are given as their text in the
+ * input, taken from what was read for the record. Those no other field reads into are skipped over by the parser
+ * too, with only their place in the input kept.
+ */
+public class StreamingJsonReader implements IJsonReader {
+  private static final JsonFactory JSON_FACTORY = JsonProviders.createFactory();
+
+  private static final Option[] DEFAULT_OPTIONS = { Option.SUPPRESS_EXCEPTIONS, Option.ALWAYS_RETURN_LIST };
+
+  /** compiled field paths, shared by all readers */
+  private static final PathPlanCache<Plan> PLANS = new PathPlanCache<>( 256 );
+
+  private boolean ignoreMissingPath;
+  private boolean defaultPathLeafToNull;
+  private long rowLimit;
+
+  private JsonInputField[] fields;
+  /** fields keeping the input text of objects and arrays, null if none */
+  private boolean[] rawFields;
+  private LogChannelInterface log;
+  private Configuration jsonConfiguration;
+  private JsonProvider jsonProvider;
+
+  /** steps leading to the records */
+  private List<Step> recordPath;
+  /** evaluates the rest of every field path against a record */
+  private MultiPathEvaluator recordEvaluator;
+  /** parts of a record the rest of the field paths can reach, null if all */
+  private Projection recordProjection;
+  /** filter a record must pass, if the record path ends with one */
+  private Step recordFilter;
+
+  public StreamingJsonReader( JsonInputField[] fields, boolean defaultPathLeafToNull, LogChannelInterface log )
+    throws KettleException {
+    this.ignoreMissingPath = false;
+    this.defaultPathLeafToNull = defaultPathLeafToNull;
+    this.log = log;
+    this.jsonConfiguration = createConfiguration();
+    setFields( fields );
+  }
+
+  private Configuration createConfiguration() {
+    Configuration configuration =
+        Configuration.builder().jsonProvider( jsonProvider ).options( DEFAULT_OPTIONS ).build();
+    if ( defaultPathLeafToNull ) {
+      configuration = configuration.addOptions( Option.DEFAULT_PATH_LEAF_TO_NULL );
+    }
+    return configuration;
+  }
+
+  @Override
+  public void setFields( JsonInputField[] fields ) throws KettleException {
+    this.fields = fields;
+    rawFields = null;
+    for ( int i = 0; i < fields.length; i++ ) {
+      if ( fields[ i ].isRawJson() ) {
+        if ( rawFields == null ) {
+          rawFields = new boolean[ fields.length ];
+        }
+        rawFields[ i ] = true;
+      }
+    }
+    compilePaths();
+  }
+
+  @Override
+  public boolean isIgnoreMissingPath() {
+    return ignoreMissingPath;
+  }
+
+  @Override
+  public void setIgnoreMissingPath( boolean value ) {
+    this.ignoreMissingPath = value;
+  }
+
+  @Override
+  public void setRowLimit( long rowLimit ) {
+    this.rowLimit = rowLimit;
+  }
+
+  @Override
+  public void setJsonProvider( JsonProvider provider ) {
+    this.jsonProvider = provider;
+    this.jsonConfiguration = createConfiguration();
+  }
+
+  public void setDefaultPathLeafToNull( boolean value ) throws KettleException {
+    if ( value != this.defaultPathLeafToNull ) {
+      this.defaultPathLeafToNull = value;
+      this.jsonConfiguration = createConfiguration();
+      compilePaths();
+    }
+  }
+
+  /**
+   * Takes the plan for the field paths, compiled by any reader that had the same paths and options.
+   */
+  private void compilePaths() {
+    List<Object> key = PathPlanCache.key( fields, defaultPathLeafToNull );
+    Plan plan = PLANS.get( key );
+    if ( plan == null ) {
+      plan = new Plan( fields, defaultPathLeafToNull );
+      PLANS.put( key, plan );
+    }
+    recordPath = plan.recordPath;
+    recordEvaluator = plan.recordEvaluator;
+    recordFilter = plan.recordFilter;
+    recordProjection = plan.recordProjection;
+  }
+
+  /**
+   * Field paths split in a common record path and relative paths.
+   */
+  private static class Plan {
+    private final List<Step> recordPath;
+    private final MultiPathEvaluator recordEvaluator;
+    private Step recordFilter;
+    private final Projection recordProjection;
+
+    Plan( JsonInputField[] fields, boolean defaultPathLeafToNull ) {
+      SimpleJsonPath[] parsed = new SimpleJsonPath[ fields.length ];
+      for ( int i = 0; i < fields.length; i++ ) {
+        parsed[ i ] = SimpleJsonPath.parse( fields[ i ].getPath() );
+      }
+      int common = SimpleJsonPath.commonPrefix( parsed );
+      for ( int i = 0; i < common; i++ ) {
+        if ( parsed[ 0 ].getSteps().get( i ).getType() == StepType.FILTER ) {
+          // a filter ends the record path: its candidates are read, as far as needed, then tested
+          common = i + 1;
+        }
+      }
+      if ( defaultPathLeafToNull ) {
+        // a field ending with a child name must keep it relative: a missing leaf still yields a null value
+        while ( common > 0 && parsed[ 0 ].getSteps().get( common - 1 ).getType() == StepType.NAME
+            && hasFieldEndingAt( parsed, common ) ) {
+          common--;
+        }
+      }
+      recordPath = common == 0
+          ? new ArrayList<Step>()
+          : new ArrayList<>( parsed[ 0 ].getSteps().subList( 0, common ) );
+      List<List<Step>> relativeSteps = new ArrayList<>( fields.length );
+      JsonPath[] relativeTails = new JsonPath[ fields.length ];
+      boolean[] textOnly = new boolean[ fields.length ];
+      for ( int i = 0; i < fields.length; i++ ) {
+        List<Step> steps = parsed[ i ].getSteps();
+        relativeSteps.add( new ArrayList<>( steps.subList( common, steps.size() ) ) );
+        if ( parsed[ i ].getTail() != null ) {
+          relativeTails[ i ] = JsonPath.compile( parsed[ i ].getTail() );
+        } else {
+          textOnly[ i ] = fields[ i ].isRawJson();
+        }
+      }
+      recordEvaluator = new MultiPathEvaluator( relativeSteps, relativeTails );
+      List<List<Step>> projected = new ArrayList<>( relativeSteps );
+      if ( common > 0 && recordPath.get( common - 1 ).getType() == StepType.FILTER ) {
+        recordFilter = recordPath.get( common - 1 );
+        projected.addAll( recordFilter.getReferences() );
+      }
+      recordProjection = Projection.compile( projected, textOnly );
+    }
+  }
+
+  private static boolean hasFieldEndingAt( SimpleJsonPath[] paths, int nbSteps ) {
+    for ( SimpleJsonPath path : paths ) {
+      if ( path.getSteps().size() == nbSteps && path.getTail() == null ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public RowSet parse( InputStream in ) throws KettleException {
+    try {
+      if ( rawFields == null ) {
+        return new StreamingRowSet( JSON_FACTORY.createParser( in ), null );
+      }
+      RecordingInputStream recording = new RecordingInputStream( in );
+      return new StreamingRowSet( JSON_FACTORY.createParser( recording ), recording );
+    } catch ( IOException e ) {
+      throw new KettleException( e );
+    }
+  }
+
+  @Override
+  public RowSet parse( String json ) throws KettleException {
+    final String text = FastJsonReader.stripByteOrderMark( json );
+    try {
+      return new StreamingRowSet( JSON_FACTORY.createParser( text ), rawFields == null ? null : new RecordedInput() {
+        @Override
+        public void release( long position ) {
+          // all kept already
+        }
+
+        @Override
+        public String getText( long start, long end ) {
+          return text.substring( (int) start, (int) end );
+        }
+      } );
+    } catch ( IOException e ) {
+      throw new KettleException( e );
+    }
+  }
+
+  /**
+   * Input read by a parser, spans of which can be taken back verbatim. Positions are counted in bytes or in chars, as
+   * the parser counts them.
+   */
+  interface RecordedInput {
+    /**
+     * Input before <code>position</code> can be dropped.
+     */
+    void release( long position );
+
+    /**
+     * @return input from <code>start</code> to <code>end</code>; null if it was released
+     */
+    String getText( long start, long end );
+  }
+
+  /**
+   * @return position of a token in the input: in bytes for byte parsers, in chars for text ones
+   */
+  private static long getOffset( JsonLocation location ) {
+    long offset = location.getByteOffset();
+    return offset >= 0 ? offset : location.getCharOffset();
+  }
+
+  /**
+   * Reads the value starting at the current token into provider objects.
+   *
+   * @param spans
+   *          if not null, gets the input byte range of each object and array read, when the parser tracks it
+   */
+  static Object readValue( JsonParser parser, JsonProvider provider, Map<Object, long[]> spans ) throws IOException {
+    return readValue( parser, provider, spans, null );
+  }
+
+  /**
+   * Reads the value starting at the current token into provider objects, skipping what is out of the projection.
+   *
+   * @param spans
+   *          if not null, gets the input byte range of each object and array read, when the parser tracks it
+   * @param projection
+   *          parts of the value to read, all if null; an object or array only needed as text is skipped over, and
+   *          read as a stand-in whose range is in <code>spans</code>
+   */
+  static Object readValue( JsonParser parser, JsonProvider provider, Map<Object, long[]> spans,
+      Projection projection ) throws IOException {
+    JsonToken token = parser.getCurrentToken();
+    if ( token == null ) {
+      return null;
+    }
+    if ( projection != null && projection.isWhole() ) {
+      projection = null;
+    }
+    long start = spans == null ? -1 : getOffset( parser.getTokenLocation() );
+    if ( projection != null && projection.isTextOnly() && start >= 0 && token.isStructStart() ) {
+      parser.skipChildren();
+      Object skipped = new SkippedValue();
+      addSpan( spans, skipped, start, parser );
+      return skipped;
+    }
+    switch ( token ) {
+      case START_OBJECT:
+        Object map = provider.createMap();
+        while ( parser.nextToken() == JsonToken.FIELD_NAME ) {
+          String name = parser.getCurrentName();
+          parser.nextToken();
+          if ( projection == null ) {
+            provider.setProperty( map, name, readValue( parser, provider, spans, null ) );
+          } else {
+            Projection member = projection.member( name );
+            if ( member == null ) {
+              parser.skipChildren();
+            } else {
+              provider.setProperty( map, name, readValue( parser, provider, spans, member ) );
+            }
+          }
+        }
+        addSpan( spans, map, start, parser );
+        return map;
+      case START_ARRAY:
+        Object array = provider.createArray();
+        int idx = 0;
+        while ( parser.nextToken() != JsonToken.END_ARRAY ) {
+          if ( projection == null ) {
+            provider.setArrayIndex( array, idx++, readValue( parser, provider, spans, null ) );
+            continue;
+          }
+          Projection element = projection.element( idx );
+          if ( element != null ) {
+            provider.setArrayIndex( array, idx, readValue( parser, provider, spans, element ) );
+          } else {
+            parser.skipChildren();
+            if ( !projection.isPastLastElement( idx ) ) {
+              // keeps the position of the elements after it
+              provider.setArrayIndex( array, idx, null );
+            }
+          }
+          idx++;
+        }
+        addSpan( spans, array, start, parser );
+        return array;
+      case VALUE_STRING:
+        return parser.getText();
+      case VALUE_NUMBER_INT:
+        return parser.getNumberValue();
+      case VALUE_NUMBER_FLOAT:
+        return parser.getDoubleValue();
+      case VALUE_TRUE:
+        return Boolean.TRUE;
+      case VALUE_FALSE:
+        return Boolean.FALSE;
+      case VALUE_EMBEDDED_OBJECT:
+        return parser.getEmbeddedObject();
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Stands for an object or array skipped over, only the input text of which is needed.
+   */
+  private static class SkippedValue {
+  }
+
+  private static void addSpan( Map<Object, long[]> spans, Object value, long start, JsonParser parser ) {
+    if ( start >= 0 ) {
+      // the closing token was just read
+      long end = getOffset( parser.getCurrentLocation() );
+      if ( end > start ) {
+        spans.put( value, new long[] { start, end } );
+      }
+    }
+  }
+
+  /**
+   * Pulls records from the parser, one at a time, as rows are requested.
+   */
+  private class StreamingRowSet extends LazyRowSet {
+    private final JsonParser parser;
+    private final JsonProvider provider;
+    /** input as read by the parser, if raw text is needed */
+    private final RecordedInput recording;
+    /** input byte range of the objects and arrays of the current record, by identity */
+    private final Map<Object, long[]> spans;
+    /** next array position for each open container along the record path */
+    private final int[] positions;
+    /** number of containers entered along the record path */
+    private int depth;
+
+    StreamingRowSet( JsonParser parser, RecordedInput recording ) {
+      super( fields, ignoreMissingPath, rowLimit, log );
+      this.parser = parser;
+      this.provider = jsonConfiguration.jsonProvider();
+      this.positions = new int[ recordPath.size() ];
+      this.recording = recording;
+      this.spans = recording == null ? null : new IdentityHashMap<Object, long[]>();
+    }
+
+    @Override
+    protected boolean readNext() throws IOException {
+      while ( nextRecord() ) {
+        if ( spans != null ) {
+          spans.clear();
+        }
+        Object record = readValue( parser, provider, spans, recordProjection );
+        if ( recordFilter != null && !recordFilter.accepts( record, jsonConfiguration ) ) {
+          continue;
+        }
+        List<List<?>> values = recordEvaluator.evaluate( record, jsonConfiguration );
+        addRecord( recording == null ? values : toRawText( values ) );
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Replaces objects and arrays with their input text, for raw JSON fields.
+     */
+    private List<List<?>> toRawText( List<List<?>> values ) {
+      for ( int i = 0; i < rawFields.length; i++ ) {
+        if ( !rawFields[ i ] ) {
+          continue;
+        }
+        List<Object> texts = new ArrayList<>( values.get( i ) );
+        for ( int j = 0; j < texts.size(); j++ ) {
+          long[] span = spans.get( texts.get( j ) );
+          String text = span == null ? null : recording.getText( span[ 0 ], span[ 1 ] );
+          if ( text != null || texts.get( j ) instanceof SkippedValue ) {
+            texts.set( j, text );
+          }
+        }
+        values.set( i, texts );
+      }
+      return values;
+    }
+
+    @Override
+    protected void closeInput() throws IOException {
+      parser.close();
+    }
+
+    /**
+     * Moves to the next value matching the record path.
+     *
+     * @return false when the input is exhausted
+     */
+    private boolean nextRecord() throws IOException {
+      final int nbSteps = recordPath.size();
+      JsonToken token;
+      while ( ( token = parser.nextToken() ) != null ) {
+        if ( recording != null ) {
+          // bytes before the current token are part of no record left to read
+          recording.release( getOffset( parser.getTokenLocation() ) );
+        }
+        if ( depth > 0 ) {
+          if ( token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY ) {
+            depth--;
+            continue;
+          }
+          Step step = recordPath.get( depth - 1 );
+          boolean matches;
+          if ( token == JsonToken.FIELD_NAME ) {
+            matches = step.matchesName( parser.getCurrentName() );
+            token = parser.nextToken();
+          } else {
+            matches = step.matchesIndex( positions[ depth - 1 ]++ );
+          }
+          if ( !matches ) {
+            parser.skipChildren();
+            continue;
+          }
+        }
+        // current value matches the first 'depth' steps
+        if ( depth == nbSteps ) {
+          return true;
+        }
+        StepType next = recordPath.get( depth ).getType();
+        if ( token == JsonToken.START_OBJECT && next == StepType.FILTER ) {
+          // the last step: an object is tested as a whole
+          return true;
+        }
+        if ( ( token == JsonToken.START_OBJECT && next != StepType.INDEX )
+            || ( token == JsonToken.START_ARRAY && next != StepType.NAME ) ) {
+          positions[ depth ] = 0;
+          depth++;
+        } else {
+          parser.skipChildren();
+        }
+      }
+      return false;
+    }
+  }
+
+}
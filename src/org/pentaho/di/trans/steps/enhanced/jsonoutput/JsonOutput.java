@@ -26,15 +26,27 @@ import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.commons.vfs2.FileObject;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.node.JsonNodeFactory;
 import org.codehaus.jackson.node.ObjectNode;
+import org.codehaus.jackson.util.MinimalPrettyPrinter;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.ResultFile;
 import org.pentaho.di.core.exception.KettleException;
@@ -76,6 +88,22 @@ public class JsonOutput extends BaseStep implements StepInterface {
     private ObjectMapper mapper;
     private int startPagePos;
 
+    /** writes rows straight to the JSON text, if streaming generation is on */
+    private JsonRowWriter rowWriter;
+    private JsonGenerator chunkGenerator;
+    /** text of the current chunk, if it's given as output value */
+    private StringWriter chunkText;
+    /** first row of the current chunk, written once it's known if there are more */
+    private Object[] chunkFirstRow;
+    private int chunkRows;
+    /** writes the rows to the array of the current file, if all of its rows go in a single array */
+    private JsonGenerator fileGenerator;
+
+    /** opens the next file of a split output while the current one is written */
+    private ExecutorService fileOpener;
+    private Future<OutputStream> nextFile;
+    private String nextFilename;
+
     public JsonOutput(StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
                       Trans trans) {
         super(stepMeta, stepDataInterface, copyNr, transMeta, trans);
@@ -83,13 +111,32 @@ public class JsonOutput extends BaseStep implements StepInterface {
 
     public void manageRowItems(Object[] row) throws KettleException {
 
-        if (data.isGenLoopOverKey() && !sameGroup( prevRow, row ) && jsonItems.size()>0) {
+        if (data.isGenLoopOverKey() && !sameGroup( prevRow, row ) && getChunkSize()>0) {
+            // Output the new row
+            logDebug("Record Num: " + data.nrRow + " - Generating JSON chunk");
+            outPutRow(prevRow);
+            jsonItems = new ArrayList<>();
+        }
+
+        if (rowWriter != null) {
+            generateRowItem(row);
+        } else {
+            jsonItems.add(createRowItem(row));
+        }
+        prevRow = data.inputRowMeta.cloneRow( row ); // copy the row to previous
+        data.nrRow++;
+
+        if (meta.getSplitOutputAfter() > 0 && (data.nrRow) % meta.getSplitOutputAfter() == 0
+                || isChunkFillingFile()) {
             // Output the new row
             logDebug("Record Num: " + data.nrRow + " - Generating JSON chunk");
             outPutRow(prevRow);
             jsonItems = new ArrayList<>();
         }
 
+    }
+
+    private ObjectNode createRowItem(Object[] row) throws KettleException {
         // Create a new object with specified fields
         itemNode = new ObjectNode(nc);
 
@@ -141,13 +188,14 @@ public class JsonOutput extends BaseStep implements StepInterface {
                     String value = data.inputRowMeta.getString(row, data.fieldIndexes[i]);
                     if (value != null) {
                         if (outputField.isJSONFragment()) {
+                            JsonNode jsonNode;
                             try {
-                                JsonNode jsonNode = mapper.readTree(value);
-                                itemNode.put(outputField.getElementName(), jsonNode);
+                                jsonNode = mapper.readTree(value);
                             } catch (IOException e) {
-                                // TBD Exception must be properly managed
-                                e.printStackTrace();
+                                throw new KettleValueException(BaseMessages.getString(
+                                        PKG, "JsonOutput.Error.InvalidJSONFragment", outputField.getFieldName()), e);
                             }
+                            itemNode.put(outputField.getElementName(), jsonNode);
                         } else {
                             itemNode.put(outputField.getElementName(), value);
 
@@ -161,17 +209,195 @@ public class JsonOutput extends BaseStep implements StepInterface {
             }
         }
 
-        jsonItems.add(itemNode);
-        prevRow = data.inputRowMeta.cloneRow( row ); // copy the row to previous
-        data.nrRow++;
+        return itemNode;
+    }
 
-        if (meta.getSplitOutputAfter() > 0 && (data.nrRow) % meta.getSplitOutputAfter() == 0) {
-            // Output the new row
-            logDebug("Record Num: " + data.nrRow + " - Generating JSON chunk");
-            outPutRow(prevRow);
-            jsonItems = new ArrayList<>();
+    /**
+     * Writes the row as an item of the current chunk, starting the chunk if needed. The first item is held back until
+     * a second one comes or the chunk ends: a single item may be written without the enclosing array.<br>
+     * Line delimited rows are written as they come, each followed by a new line.<br>
+     * In a file array, the row is written to the file as it comes, and to the chunk only if it's given as output
+     * value.
+     */
+    private void generateRowItem(Object[] row) throws KettleException {
+        try {
+            if (isFileArray()) {
+                if (!openNewFile()) {
+                    throw new KettleStepException(BaseMessages.getString(
+                            PKG, "JsonOutput.Error.OpenNewFile", buildFilename()));
+                }
+                rowWriter.write(fileGenerator, row);
+                if (!data.isOutputValue()) {
+                    chunkRows++;
+                    countFileBytes();
+                    return;
+                }
+            }
+            if (meta.isLineDelimited()) {
+                if (chunkRows == 0) {
+                    startChunk();
+                }
+                rowWriter.write(chunkGenerator, row);
+                chunkGenerator.writeRaw('\n');
+            } else if (chunkRows == 0) {
+                startChunk();
+                chunkFirstRow = data.inputRowMeta.cloneRow(row);
+            } else {
+                if (chunkRows == 1) {
+                    chunkGenerator.writeStartArray();
+                    rowWriter.write(chunkGenerator, chunkFirstRow);
+                    chunkFirstRow = null;
+                }
+                rowWriter.write(chunkGenerator, row);
+            }
+            chunkRows++;
+            countFileBytes();
+        } catch (IOException e) {
+            throw new KettleStepException(BaseMessages.getString(PKG, "JsonOutput.Error.Writing"), e);
+        }
+    }
+
+    /**
+     * Opens the generator of a new chunk: straight to the file if that's the only output, to a string otherwise.
+     */
+    private void startChunk() throws KettleStepException, IOException {
+        Writer target;
+        if (data.isOutputValue()) {
+            chunkText = new StringWriter();
+            target = chunkText;
+        } else {
+            if (!openNewFile()) {
+                throw new KettleStepException(BaseMessages.getString(
+                        PKG, "JsonOutput.Error.OpenNewFile", buildFilename()));
+            }
+            target = data.writer;
+        }
+        chunkGenerator = mapper.getJsonFactory().createJsonGenerator(target);
+        // the file is flushed and closed by the step
+        chunkGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        chunkGenerator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        if (meta.isLineDelimited()) {
+            // rows are separated by the new line that follows each of them
+            chunkGenerator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+        } else {
+            if (meta.isJsonPrittified()) {
+                chunkGenerator.useDefaultPrettyPrinter();
+            }
+            if (!Const.isEmpty(data.realBlocName)) {
+                chunkGenerator.writeStartObject();
+                chunkGenerator.writeFieldName(data.realBlocName);
+            }
+        }
+    }
+
+    /**
+     * Closes the structures of the current chunk.
+     *
+     * @return the text of the chunk, if it's given as output value
+     */
+    private String endChunk() throws IOException, KettleValueException {
+        if (chunkGenerator == null) {
+            // the rows only went to the file array
+            chunkRows = 0;
+            return null;
+        }
+        // line delimited rows have no enclosing structure
+        if (!meta.isLineDelimited()) {
+            if (chunkRows == 1) {
+                if (meta.isUseArrayWithSingleInstance()) {
+                    chunkGenerator.writeStartArray();
+                }
+                rowWriter.write(chunkGenerator, chunkFirstRow);
+                chunkFirstRow = null;
+            }
+            if (chunkRows > 1 || meta.isUseArrayWithSingleInstance()) {
+                chunkGenerator.writeEndArray();
+            }
+            if (!Const.isEmpty(data.realBlocName)) {
+                chunkGenerator.writeEndObject();
+            }
+        }
+        chunkGenerator.close();
+        chunkGenerator = null;
+        chunkRows = 0;
+        String text = chunkText == null ? null : chunkText.toString();
+        chunkText = null;
+        return text;
+    }
+
+    private int getChunkSize() {
+        return rowWriter != null ? chunkRows : jsonItems.size();
+    }
+
+    private boolean isFileArray() {
+        return data.isWriteToFile() && meta.isFileArray() && !meta.isLineDelimited();
+    }
+
+    /**
+     * Opens the array the rows of the file are written to, in the json bloc if any.
+     */
+    private void startFileArray() throws IOException {
+        fileGenerator = mapper.getJsonFactory().createJsonGenerator(data.writer);
+        // the file is flushed and closed by the step
+        fileGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        fileGenerator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        if (meta.isJsonPrittified()) {
+            fileGenerator.useDefaultPrettyPrinter();
         }
+        if (!Const.isEmpty(data.realBlocName)) {
+            fileGenerator.writeStartObject();
+            fileGenerator.writeFieldName(data.realBlocName);
+        }
+        fileGenerator.writeStartArray();
+    }
+
+    private void endFileArray() throws IOException {
+        fileGenerator.writeEndArray();
+        if (!Const.isEmpty(data.realBlocName)) {
+            fileGenerator.writeEndObject();
+        }
+        fileGenerator.close();
+        fileGenerator = null;
+    }
+
+    /**
+     * @return if the current chunk brings the file up to its number of rows or its size: the chunk must end there
+     */
+    private boolean isChunkFillingFile() {
+        if (!data.isWriteToFile() || meta.isServletOutput()) {
+            return false;
+        }
+        // the size only grows with the chunk if its rows are written straight to the file
+        return (meta.getSplitFileRows() > 0 && data.fileRows + getChunkSize() >= meta.getSplitFileRows())
+                || (data.fileBytes != null && data.fileBytes.getByteCount() >= meta.getSplitFileSize());
+    }
+
+    /**
+     * Passes what was written to the file so far on to its byte count, if it's split by size. The file buffer itself
+     * isn't flushed.
+     */
+    private void countFileBytes() throws IOException {
+        if (data.fileBytes == null) {
+            return;
+        }
+        if (fileGenerator != null) {
+            fileGenerator.flush();
+        }
+        if (chunkGenerator != null && chunkText == null) {
+            chunkGenerator.flush();
+        }
+        data.writer.flush();
+    }
 
+    /**
+     * @return if the current file has reached its number of rows or its size, once a chunk is written
+     */
+    private boolean isFileFull() {
+        if (data.writer == null || meta.isServletOutput()) {
+            return false;
+        }
+        return (meta.getSplitFileRows() > 0 && data.fileRows >= meta.getSplitFileRows())
+                || (data.fileBytes != null && data.fileBytes.getByteCount() >= meta.getSplitFileSize());
     }
 
     // Is the row r of the same group as previous?
@@ -209,9 +435,9 @@ public class JsonOutput extends BaseStep implements StepInterface {
     private boolean onFirstRecord(Object[] r) throws KettleException {
 
         nc = new ObjectMapper().getNodeFactory();
-        mapper = new ObjectMapper();
         jsonItems = new ArrayList<>();
         startPagePos = 1;
+        chunkRows = 0;
 
         first = false;
         data.inputRowMeta = getInputRowMeta();
@@ -249,7 +475,10 @@ public class JsonOutput extends BaseStep implements StepInterface {
         }
 
         initDataFieldsPositionsArray();
-
+        if (meta.isStreamingGeneration() || meta.isLineDelimited() || isFileArray()) {
+            // line delimited rows and file arrays are always written as they come
+            rowWriter = new JsonRowWriter(data.inputRowMeta, data.fieldIndexes, meta.getOutputFields(), mapper);
+        }
 
         if (initKeyFieldsPositionArray(r)) return true;
         return false;
@@ -290,37 +519,34 @@ public class JsonOutput extends BaseStep implements StepInterface {
         // We can now output an object
         String value = null;
 
-        if (jsonItems == null || jsonItems.size()==0)
+        if (jsonItems == null || getChunkSize()==0)
             return;
+        int rows = getChunkSize();
 
         try {
-            if (jsonItems != null && jsonItems.size()>0) {
-                if (meta.getJsonBloc() != null && meta.getJsonBloc().length()>0) {
-                    ObjectNode theNode = new ObjectNode(nc);
-                    // TBD Try to understand if this can have a performance impact and do it better...
-
-                    theNode.put(meta.getJsonBloc(), mapper.readTree(mapper.writeValueAsString(jsonItems.size() > 1
-                            ? jsonItems : (!meta.isUseArrayWithSingleInstance() ? jsonItems.get(0) : jsonItems))));
-                    if (meta.isJsonPrittified())
-                        value = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(theNode);
-                    else
-                        value = mapper.writeValueAsString(theNode);
-                } else {
-                    if (meta.isJsonPrittified())
-                        value = mapper.writerWithDefaultPrettyPrinter().writeValueAsString((jsonItems.size() > 1
-                                ? jsonItems : (!meta.isUseArrayWithSingleInstance() ? jsonItems.get(0) : jsonItems)));
-                    else
-                        value = mapper.writeValueAsString((jsonItems.size() > 1
-                            ? jsonItems : (!meta.isUseArrayWithSingleInstance() ? jsonItems.get(0) : jsonItems)));
+            if (rowWriter != null) {
+                value = endChunk();
+            } else if (jsonItems != null && jsonItems.size()>0) {
+                Object items = jsonItems.size() > 1
+                        ? jsonItems : (!meta.isUseArrayWithSingleInstance() ? jsonItems.get(0) : jsonItems);
+                if (!Const.isEmpty(data.realBlocName)) {
+                    // the items are nested as they are, and written in the same pass
+                    items = Collections.singletonMap(data.realBlocName, items);
                 }
+                if (meta.isJsonPrittified())
+                    value = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(items);
+                else
+                    value = mapper.writeValueAsString(items);
             }
 
         } catch (IOException e) {
             // TBD Exception must be properly managed
             e.printStackTrace();
+        } catch (KettleValueException e) {
+            throw new KettleStepException(BaseMessages.getString(PKG, "JsonOutput.Error.Writing"), e);
         }
 
-        int jsonLength = value.length();
+        int jsonLength = value == null ? 0 : value.length();
 
         if (data.isOutputValue() && data.outputRowMeta != null) {
 
@@ -379,21 +605,29 @@ public class JsonOutput extends BaseStep implements StepInterface {
         }
 
         if (data.isWriteToFile()) {
-            // Open a file
+            // Open the file, unless it's open already
             if (!openNewFile()) {
                 throw new KettleStepException(BaseMessages.getString(
                         PKG, "JsonOutput.Error.OpenNewFile", buildFilename()));
             }
-            // Write data to file
+            // Write data to file, if not written already
             try {
-                data.writer.write(value);
+                if (fileGenerator != null) {
+                    // the rows are in the file array already
+                    fileGenerator.flush();
+                } else if (value != null) {
+                    data.writer.write(value);
+                }
+                countFileBytes();
             } catch (Exception e) {
                 throw new KettleStepException(BaseMessages.getString(PKG, "JsonOutput.Error.Writing"), e);
             }
-            // Close file
-            closeFile();
+            // the file is kept open for the next chunks, until it's full or the step is disposed
+            data.fileRows += rows;
+            if (isFileFull() && !closeFile()) {
+                throw new KettleStepException(BaseMessages.getString(PKG, "JsonOutput.Error.Writing"));
+            }
         }
-        // Data are safe
     }
 
     public boolean init(StepMetaInterface smi, StepDataInterface sdi) {
@@ -405,6 +639,9 @@ public class JsonOutput extends BaseStep implements StepInterface {
             data.setOutputValue((meta.getOperationType() != JsonOutputMeta.OPERATION_TYPE_WRITE_TO_FILE));
             data.setGenFlat((meta.getGenerationType() != JsonOutputMeta.GENERATON_TYPE_FLAT));
             data.setGenLoopOverKey((meta.getOperationType() != JsonOutputMeta.GENERATON_TYPE_LOOP_OVER_KEY));
+            data.realBlocName = Const.NVL(environmentSubstitute(meta.getJsonBloc()), "");
+            // the file array may be opened with the file, before the first row
+            mapper = new ObjectMapper();
 
             if (data.isOutputValue()) {
                 // We need to have output field name
@@ -433,7 +670,6 @@ public class JsonOutput extends BaseStep implements StepInterface {
                 }
 
             }
-            data.realBlocName = Const.NVL(environmentSubstitute(meta.getJsonBloc()), "");
             return true;
         }
 
@@ -447,8 +683,12 @@ public class JsonOutput extends BaseStep implements StepInterface {
         if (jsonItems != null) {
             jsonItems = null;
         }
+        chunkGenerator = null;
+        chunkText = null;
+        chunkFirstRow = null;
 
         closeFile();
+        discardNextFile();
         super.dispose(smi, sdi);
 
     }
@@ -494,9 +734,20 @@ public class JsonOutput extends BaseStep implements StepInterface {
 
             if (meta.isServletOutput()) {
                 data.writer = getTrans().getServletPrintWriter();
+                if (isFileArray()) {
+                    startFileArray();
+                }
             } else {
-                String filename = buildFilename();
-                createParentFolder(filename);
+                String filename;
+                OutputStream outputStream;
+                if (nextFile != null) {
+                    // opened while the previous file was written
+                    filename = nextFilename;
+                    outputStream = getNextFile();
+                } else {
+                    filename = buildFilename();
+                    outputStream = openOutputStream(filename);
+                }
                 if (meta.AddToResult()) {
                     // Add this to the result file names...
                     ResultFile resultFile =
@@ -507,16 +758,27 @@ public class JsonOutput extends BaseStep implements StepInterface {
                     addResultFile(resultFile);
                 }
 
-                OutputStream outputStream;
-                OutputStream fos = KettleVFS.getOutputStream(filename, getTransMeta(), meta.isFileAppended());
-                outputStream = fos;
-
+                int bufferSize = meta.getOutputBufferSize() > 0
+                        ? meta.getOutputBufferSize() : JsonOutputMeta.DEFAULT_OUTPUT_BUFFER_SIZE;
+                outputStream = new BufferedOutputStream(outputStream, bufferSize);
+                if (meta.getSplitFileSize() > 0) {
+                    // counted before the buffer, which is only flushed on close: the encoded text can be passed
+                    // on to the count at any time, without being written out
+                    data.fileBytes = new CountingOutputStream(outputStream) {
+                        @Override
+                        public void flush() {
+                        }
+                    };
+                    outputStream = data.fileBytes;
+                }
                 if (!Const.isEmpty(meta.getEncoding())) {
-                    data.writer =
-                            new OutputStreamWriter(new BufferedOutputStream(outputStream, 5000), environmentSubstitute(meta
-                                    .getEncoding()));
+                    data.writer = new OutputStreamWriter(outputStream, environmentSubstitute(meta.getEncoding()));
                 } else {
-                    data.writer = new OutputStreamWriter(new BufferedOutputStream(outputStream, 5000));
+                    data.writer = new OutputStreamWriter(outputStream);
+                }
+                data.fileRows = 0;
+                if (isFileArray()) {
+                    startFileArray();
                 }
 
                 if (log.isDetailed()) {
@@ -524,6 +786,9 @@ public class JsonOutput extends BaseStep implements StepInterface {
                 }
 
                 data.splitnr++;
+                if (meta.isSplitFiles()) {
+                    openNextFile();
+                }
             }
 
             retval = true;
@@ -536,7 +801,75 @@ public class JsonOutput extends BaseStep implements StepInterface {
     }
 
     public String buildFilename() {
-        return meta.buildFilename(environmentSubstitute(meta.getFileName()), getCopy(), data.splitnr);
+        return meta.buildFilename(environmentSubstitute(meta.getFileName()), getCopy(), getPartitionID(), data.splitnr);
+    }
+
+    private OutputStream openOutputStream(String filename) throws KettleException {
+        createParentFolder(filename);
+        return KettleVFS.getOutputStream(filename, getTransMeta(), meta.isFileAppended());
+    }
+
+    /**
+     * Starts opening the file that follows the current one, so that rows aren't held up when switching to it.
+     */
+    private void openNextFile() {
+        if (fileOpener == null) {
+            final String threadName = getStepname() + " - open file";
+            fileOpener = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, threadName);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        final String filename = buildFilename();
+        nextFilename = filename;
+        nextFile = fileOpener.submit(new Callable<OutputStream>() {
+            @Override
+            public OutputStream call() throws KettleException {
+                return openOutputStream(filename);
+            }
+        });
+    }
+
+    /**
+     * Waits for the file opened ahead.
+     */
+    private OutputStream getNextFile() throws KettleException {
+        Future<OutputStream> file = nextFile;
+        nextFile = null;
+        try {
+            return file.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KettleException(e);
+        } catch (ExecutionException e) {
+            throw new KettleException(e.getCause());
+        }
+    }
+
+    /**
+     * Closes the file opened ahead if no row was left for it, and removes it unless it held something before.
+     */
+    private void discardNextFile() {
+        if (nextFile != null) {
+            try {
+                getNextFile().close();
+                FileObject file = KettleVFS.getFileObject(nextFilename, getTransMeta());
+                // a file appended to is kept if it wasn't empty
+                if (!meta.isFileAppended() || file.getContent().getSize() == 0) {
+                    file.delete();
+                }
+            } catch (Exception e) {
+                logError(BaseMessages.getString(PKG, "JsonOutput.Error.ClosingFile", e.toString()));
+            }
+        }
+        if (fileOpener != null) {
+            fileOpener.shutdownNow();
+            fileOpener = null;
+        }
     }
 
     private boolean closeFile() {
@@ -546,8 +879,13 @@ public class JsonOutput extends BaseStep implements StepInterface {
         boolean retval = false;
 
         try {
+            if (fileGenerator != null) {
+                endFileArray();
+            }
             data.writer.close();
             data.writer = null;
+            data.fileBytes = null;
+            data.fileRows = 0;
             retval = true;
         } catch (Exception e) {
             logError(BaseMessages.getString(PKG, "JsonOutput.Error.ClosingFile", e.toString()));
@@ -30,6 +30,7 @@ import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.BitSet;
 
+import org.apache.commons.io.output.CountingOutputStream;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -60,6 +61,11 @@ public class JsonOutputData extends BaseStepData implements StepDataInterface {
     public int splitnr;
     public Writer writer;
 
+    /** bytes encoded to the current file so far, null if it's not counted */
+    public CountingOutputStream fileBytes;
+    /** rows written to the current file */
+    public long fileRows;
+
     /**
      *
      */
@@ -93,6 +93,11 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
 
     public static final int OPERATION_TYPE_BOTH = 2;
 
+    /**
+     * Size of the buffer between the JSON text and the output file, in bytes
+     */
+    public static final int DEFAULT_OUTPUT_BUFFER_SIZE = 65536;
+
     public static final int GENERATON_TYPE_FLAT = 0;
     public static final int GENERATON_TYPE_LOOP_OVER_KEY = 1;
 
@@ -144,6 +149,37 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
     @Injection(name = "SPLIT_OUTPUT_AFTER", group = "GENERAL")
     private int splitOutputAfter;
 
+    /**
+     * Write each row to the JSON text as it comes, rather than building the whole chunk as a tree first
+     */
+    @Injection(name = "STREAMING_GENERATION", group = "GENERAL")
+    private boolean streamingGeneration;
+
+    /**
+     * Write each row as an object on its own line, without arrays or json bloc (NDJSON)
+     */
+    @Injection(name = "LINE_DELIMITED", group = "GENERAL")
+    private boolean lineDelimited;
+
+    /**
+     * Write all the rows of a file, as they come, to a single array (in the json bloc if any), closed with the file.
+     * Ignored with line delimited rows.
+     */
+    @Injection(name = "FILE_ARRAY", group = "GENERAL")
+    private boolean fileArray;
+
+    /**
+     * Start a new file after this number of rows, 0 for no limit
+     */
+    @Injection(name = "SPLIT_FILE_ROWS", group = "GENERAL")
+    private int splitFileRows;
+
+    /**
+     * Start a new file once this number of bytes is written, 0 for no limit
+     */
+    @Injection(name = "SPLIT_FILE_SIZE", group = "GENERAL")
+    private long splitFileSize;
+
 
   /* THE FIELD SPECIFICATIONS ... */
 
@@ -220,6 +256,12 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
 
     private boolean doNotOpenNewFileInit;
 
+    /**
+     * Size of the buffer between the JSON text and the output file, in bytes
+     */
+    @Injection(name = "OUTPUT_BUFFER_SIZE", group = "GENERAL")
+    private int outputBufferSize;
+
 
     private String jsonSizeFieldname;
     private String jsonPageStartsAtFieldname;
@@ -262,6 +304,14 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
         this.doNotOpenNewFileInit = DoNotOpenNewFileInit;
     }
 
+    public int getOutputBufferSize() {
+        return outputBufferSize;
+    }
+
+    public void setOutputBufferSize(int outputBufferSize) {
+        this.outputBufferSize = outputBufferSize;
+    }
+
     /**
      * @return Returns the create parent folder flag.
      */
@@ -456,6 +506,53 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
         this.splitOutputAfter = splitOutputAfter;
     }
 
+    public boolean isStreamingGeneration() {
+        return streamingGeneration;
+    }
+
+    public void setStreamingGeneration(boolean streamingGeneration) {
+        this.streamingGeneration = streamingGeneration;
+    }
+
+    public boolean isLineDelimited() {
+        return lineDelimited;
+    }
+
+    public void setLineDelimited(boolean lineDelimited) {
+        this.lineDelimited = lineDelimited;
+    }
+
+    public boolean isFileArray() {
+        return fileArray;
+    }
+
+    public void setFileArray(boolean fileArray) {
+        this.fileArray = fileArray;
+    }
+
+    public int getSplitFileRows() {
+        return splitFileRows;
+    }
+
+    public void setSplitFileRows(int splitFileRows) {
+        this.splitFileRows = splitFileRows;
+    }
+
+    public long getSplitFileSize() {
+        return splitFileSize;
+    }
+
+    public void setSplitFileSize(long splitFileSize) {
+        this.splitFileSize = splitFileSize;
+    }
+
+    /**
+     * @return if the output is written to numbered files, a new one being started after a number of rows or bytes
+     */
+    public boolean isSplitFiles() {
+        return splitFileRows > 0 || splitFileSize > 0;
+    }
+
     /**
      * @return Returns the outputFields.
      */
@@ -529,6 +626,11 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
             useArrayWithSingleInstance = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "use_arrays_with_single_instance"));
             jsonPrittified = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "json_prittified"));
             splitOutputAfter = Integer.parseInt(XMLHandler.getTagValue(stepnode, "split_output_after"));
+            streamingGeneration = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "streaming_generation"));
+            lineDelimited = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "line_delimited"));
+            fileArray = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "file", "array"));
+            splitFileRows = Const.toInt(XMLHandler.getTagValue(stepnode, "file", "split_rows"), 0);
+            splitFileSize = Const.toLong(XMLHandler.getTagValue(stepnode, "file", "split_size"), 0L);
 
             encoding = XMLHandler.getTagValue(stepnode, "encoding");
             addToResult = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "addToResult"));
@@ -541,6 +643,8 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
             dateInFilename = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "file", "add_date"));
             timeInFilename = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "file", "add_time"));
             doNotOpenNewFileInit = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "file", "doNotOpenNewFileInit"));
+            outputBufferSize = Const.toInt(XMLHandler.getTagValue(stepnode, "file", "buffer_size"),
+                    DEFAULT_OUTPUT_BUFFER_SIZE);
             servletOutput = "Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, "file", "servlet_output"));
 
             Node keyFieldNodes = XMLHandler.getSubNode(stepnode, "key_fields");
@@ -585,9 +689,15 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
         outputValue = "outputValue";
         jsonBloc = "result";
         splitOutputAfter = 0;
+        streamingGeneration = false;
+        lineDelimited = false;
+        fileArray = false;
+        splitFileRows = 0;
+        splitFileSize = 0;
         operationType = OPERATION_TYPE_WRITE_TO_FILE;
         generationType = GENERATON_TYPE_FLAT;
         extension = "js";
+        outputBufferSize = DEFAULT_OUTPUT_BUFFER_SIZE;
 
         int nrfields = 0;
 
@@ -652,6 +762,8 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
         retval.append("    ").append(XMLHandler.addTagValue("use_arrays_with_single_instance", useArrayWithSingleInstance));
         retval.append("    ").append(XMLHandler.addTagValue("json_prittified", jsonPrittified));
         retval.append("    ").append(XMLHandler.addTagValue("split_output_after", Integer.toString(splitOutputAfter)));
+        retval.append("    ").append(XMLHandler.addTagValue("streaming_generation", streamingGeneration));
+        retval.append("    ").append(XMLHandler.addTagValue("line_delimited", lineDelimited));
         retval.append("    ").append(XMLHandler.addTagValue("encoding", encoding));
         retval.append("    ").append(XMLHandler.addTagValue("addtoresult", addToResult));
         retval.append("    <file>" + Const.CR);
@@ -664,7 +776,11 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
         retval.append("      ").append(XMLHandler.addTagValue("add_time", timeInFilename));
         retval.append("      ").append(XMLHandler.addTagValue("create_parent_folder", createparentfolder));
         retval.append("      ").append(XMLHandler.addTagValue("doNotOpenNewFileInit", doNotOpenNewFileInit));
+        retval.append("      ").append(XMLHandler.addTagValue("buffer_size", outputBufferSize));
         retval.append("      ").append(XMLHandler.addTagValue("servlet_output", servletOutput));
+        retval.append("      ").append(XMLHandler.addTagValue("array", fileArray));
+        retval.append("      ").append(XMLHandler.addTagValue("split_rows", splitFileRows));
+        retval.append("      ").append(XMLHandler.addTagValue("split_size", splitFileSize));
         retval.append("      </file>" + Const.CR);
         retval.append("     <additional_fields>" + Const.CR);
         retval.append("      ").append(XMLHandler.addTagValue("json_page_starts_at_field", jsonPageStartsAtFieldname));
@@ -712,6 +828,8 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
             useArrayWithSingleInstance = rep.getStepAttributeBoolean(id_step, "use_arrays_with_single_instance");
             jsonPrittified = rep.getStepAttributeBoolean(id_step, "json_prittified");
             splitOutputAfter = Integer.parseInt(rep.getStepAttributeString(id_step, "split_output_after"));
+            streamingGeneration = rep.getStepAttributeBoolean(id_step, "streaming_generation");
+            lineDelimited = rep.getStepAttributeBoolean(id_step, "line_delimited");
             encoding = rep.getStepAttributeString(id_step, "encoding");
             addToResult = rep.getStepAttributeBoolean(id_step, "addtoresult");
 
@@ -724,7 +842,11 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
             timeInFilename = rep.getStepAttributeBoolean(id_step, "file_add_time");
             createparentfolder = rep.getStepAttributeBoolean(id_step, "create_parent_folder");
             doNotOpenNewFileInit = rep.getStepAttributeBoolean(id_step, "doNotOpenNewFileInit");
+            outputBufferSize = (int) rep.getStepAttributeInteger(id_step, "file_buffer_size");
             servletOutput = rep.getStepAttributeBoolean(id_step, "file_servlet_output");
+            fileArray = rep.getStepAttributeBoolean(id_step, "file_array");
+            splitFileRows = (int) rep.getStepAttributeInteger(id_step, "file_split_rows");
+            splitFileSize = rep.getStepAttributeInteger(id_step, "file_split_size");
             jsonSizeFieldname = rep.getStepAttributeString(id_step, "json_size_field");
             jsonPageStartsAtFieldname = rep.getStepAttributeString(id_step, "json_page_starts_at_field");
             jsonPageEndsAtFieldname = rep.getStepAttributeString(id_step, "json_page_ends_at_field");
@@ -781,6 +903,8 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
             rep.saveStepAttribute(id_transformation, id_step, "generation_type", getGenerationTypeCode(operationType));
             rep.saveStepAttribute(id_transformation, id_step, "json_prittified", jsonPrittified);
             rep.saveStepAttribute(id_transformation, id_step, "split_output_after", splitOutputAfter);
+            rep.saveStepAttribute(id_transformation, id_step, "streaming_generation", streamingGeneration);
+            rep.saveStepAttribute(id_transformation, id_step, "line_delimited", lineDelimited);
             rep.saveStepAttribute(id_transformation, id_step, "encoding", encoding);
             rep.saveStepAttribute(id_transformation, id_step, "addtoresult", addToResult);
 
@@ -793,7 +917,11 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
             rep.saveStepAttribute(id_transformation, id_step, "file_add_time", timeInFilename);
             rep.saveStepAttribute(id_transformation, id_step, "create_parent_folder", createparentfolder);
             rep.saveStepAttribute(id_transformation, id_step, "doNotOpenNewFileInit", doNotOpenNewFileInit);
+            rep.saveStepAttribute(id_transformation, id_step, "file_buffer_size", outputBufferSize);
             rep.saveStepAttribute(id_transformation, id_step, "file_servlet_output", servletOutput);
+            rep.saveStepAttribute(id_transformation, id_step, "file_array", fileArray);
+            rep.saveStepAttribute(id_transformation, id_step, "file_split_rows", splitFileRows);
+            rep.saveStepAttribute(id_transformation, id_step, "file_split_size", splitFileSize);
             rep.saveStepAttribute(id_transformation, id_step, "json_size_field", jsonSizeFieldname);
             rep.saveStepAttribute(id_transformation, id_step, "json_page_starts_at_field", jsonPageStartsAtFieldname);
             rep.saveStepAttribute(id_transformation, id_step, "json_page_ends_at_field", jsonPageEndsAtFieldname);
@@ -830,6 +958,10 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
             parts = 3;
         }
 
+        if (isSplitFiles()) {
+            splits = 3;
+        }
+
         int nr = copies * parts * splits;
         if (nr > 1) {
             nr++;
@@ -841,7 +973,7 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
         for (int copy = 0; copy < copies; copy++) {
             for (int part = 0; part < parts; part++) {
                 for (int split = 0; split < splits; split++) {
-                    retval[i] = buildFilename(fileName, copy, split);
+                    retval[i] = buildFilename(fileName, copy, "P" + part, split);
                     i++;
                 }
             }
@@ -854,6 +986,16 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
     }
 
     public String buildFilename(String fileName, int stepnr, int splitnr) {
+        return buildFilename(fileName, stepnr, null, splitnr);
+    }
+
+    /**
+     * @param partnr
+     *          partition the step copy works on, null if it isn't partitioned
+     * @param splitnr
+     *          number of the file, counted from 0, if the output is split
+     */
+    public String buildFilename(String fileName, int stepnr, String partnr, int splitnr) {
         SimpleDateFormat daf = new SimpleDateFormat();
 
         // Replace possible environment variables...
@@ -874,6 +1016,12 @@ public class JsonOutputMeta extends BaseStepMeta implements StepMetaInterface {
         if (stepNrInFilename) {
             retval += "_" + stepnr;
         }
+        if (partNrInFilename && !Const.isEmpty(partnr)) {
+            retval += "_" + partnr;
+        }
+        if (isSplitFiles()) {
+            retval += "_" + splitnr;
+        }
 
         if (extension != null && extension.length() != 0) {
             retval += "." + extension;
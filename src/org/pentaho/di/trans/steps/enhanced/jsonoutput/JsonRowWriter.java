@@ -0,0 +1,125 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.enhanced.jsonoutput;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.i18n.BaseMessages;
+
+/**
+ * Writes the output fields of a row as a JSON object, straight to a generator. Values are written as the object
+ * tree of a row would hold them, blank values being left out if the field says so. A JSON fragment that can't be
+ * parsed fails the row.
+ */
+class JsonRowWriter {
+    private static Class<?> PKG = JsonRowWriter.class; // for i18n purposes, needed by Translator2!!
+
+    private final RowMetaInterface rowMeta;
+    private final int[] fieldIndexes;
+    private final JsonOutputField[] fields;
+    private final ObjectMapper mapper;
+
+    JsonRowWriter(RowMetaInterface rowMeta, int[] fieldIndexes, JsonOutputField[] fields, ObjectMapper mapper) {
+        this.rowMeta = rowMeta;
+        this.fieldIndexes = fieldIndexes;
+        this.fields = fields;
+        this.mapper = mapper;
+    }
+
+    void write(JsonGenerator generator, Object[] row) throws KettleValueException, IOException {
+        generator.writeStartObject();
+        for (int i = 0; i < fields.length; i++) {
+            JsonOutputField field = fields[i];
+            ValueMetaInterface v = rowMeta.getValueMeta(fieldIndexes[i]);
+            switch (v.getType()) {
+                case ValueMetaInterface.TYPE_BOOLEAN:
+                    Boolean boolValue = rowMeta.getBoolean(row, fieldIndexes[i]);
+                    if (writeName(generator, field, boolValue)) {
+                        generator.writeBoolean(boolValue);
+                    }
+                    break;
+                case ValueMetaInterface.TYPE_INTEGER:
+                    Long integerValue = rowMeta.getInteger(row, fieldIndexes[i]);
+                    if (writeName(generator, field, integerValue)) {
+                        generator.writeNumber(integerValue);
+                    }
+                    break;
+                case ValueMetaInterface.TYPE_NUMBER:
+                    Double numberValue = rowMeta.getNumber(row, fieldIndexes[i]);
+                    if (writeName(generator, field, numberValue)) {
+                        generator.writeNumber(numberValue);
+                    }
+                    break;
+                case ValueMetaInterface.TYPE_BIGNUMBER:
+                    BigDecimal bignumberValue = rowMeta.getBigNumber(row, fieldIndexes[i]);
+                    if (writeName(generator, field, bignumberValue)) {
+                        generator.writeNumber(bignumberValue);
+                    }
+                    break;
+                default:
+                    String value = rowMeta.getString(row, fieldIndexes[i]);
+                    if (value != null && field.isJSONFragment()) {
+                        JsonNode jsonNode;
+                        try {
+                            jsonNode = mapper.readTree(value);
+                        } catch (IOException e) {
+                            throw new KettleValueException(BaseMessages.getString(
+                                    PKG, "JsonOutput.Error.InvalidJSONFragment", field.getFieldName()), e);
+                        }
+                        generator.writeFieldName(field.getElementName());
+                        generator.writeTree(jsonNode);
+                    } else if (writeName(generator, field, value)) {
+                        generator.writeString(value);
+                    }
+                    break;
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Writes the element name, and a null value if there is none.
+     *
+     * @return if the value is left to write
+     */
+    private static boolean writeName(JsonGenerator generator, JsonOutputField field, Object value)
+            throws IOException {
+        if (value == null && field.isRemoveIfBlank()) {
+            return false;
+        }
+        generator.writeFieldName(field.getElementName());
+        if (value == null) {
+            generator.writeNull();
+            return false;
+        }
+        return true;
+    }
+}
@@ -207,6 +207,12 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
     private TextVar wSizeFieldName;
     private FormData fdSizeFieldName;
 
+    private CTabItem wPerformanceTab;
+    private Composite wPerformanceComp;
+    private Button wStreamingMode, wLineDelimited, wMemoryMappedFiles;
+    private CCombo wJsonProvider, wFilePartitioning;
+    private Text wPrefetchFiles, wParseWorkers, wResultCacheEntries, wResultCacheSize;
+
     private JsonInputMeta input;
 
     private int middle;
@@ -273,6 +279,8 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
 
         addAdditionalFieldsTab();
 
+        addPerformanceTab();
+
         fdTabFolder = new FormData();
         fdTabFolder.left = new FormAttachment(0, 0);
         fdTabFolder.top = new FormAttachment(wStepname, margin);
@@ -322,6 +330,10 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
         wLimit.addSelectionListener(lsDef);
         wInclRownumField.addSelectionListener(lsDef);
         wInclFilenameField.addSelectionListener(lsDef);
+        wPrefetchFiles.addSelectionListener(lsDef);
+        wParseWorkers.addSelectionListener(lsDef);
+        wResultCacheEntries.addSelectionListener(lsDef);
+        wResultCacheSize.addSelectionListener(lsDef);
 
         // Add the file to the list of files...
         SelectionAdapter selA = new SelectionAdapter() {
@@ -528,12 +540,18 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
                                 ColumnInfo.COLUMN_TYPE_CCOMBO, new String[]{
                                 BaseMessages.getString(PKG, "System.Combo.Yes"),
                                 BaseMessages.getString(PKG, "System.Combo.No")}, true),
+                        new ColumnInfo(
+                                BaseMessages.getString(PKG, "JsonInputDialog.FieldsTable.RawJson.Column"),
+                                ColumnInfo.COLUMN_TYPE_CCOMBO, new String[]{
+                                BaseMessages.getString(PKG, "System.Combo.Yes"),
+                                BaseMessages.getString(PKG, "System.Combo.No")}, true),
                 };
 
         colinf[0].setUsingVariables(true);
         colinf[0].setToolTip(BaseMessages.getString(PKG, "JsonInputDialog.FieldsTable.Name.Column.Tooltip"));
         colinf[1].setUsingVariables(true);
         colinf[1].setToolTip(BaseMessages.getString(PKG, "JsonInputDialog.FieldsTable.Path.Column.Tooltip"));
+        colinf[11].setToolTip(BaseMessages.getString(PKG, "JsonInputDialog.FieldsTable.RawJson.Column.Tooltip"));
 
         wFields =
                 new TableView(transMeta, wFieldsComp, SWT.FULL_SELECTION | SWT.MULTI, colinf, FieldsRows, lsMod, props);
@@ -1327,6 +1345,8 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
                 if (rep != null) {
                     item.setText(11, rep);
                 }
+                item.setText(12, field.isRawJson() ? BaseMessages.getString(PKG, "System.Combo.Yes")
+                        : BaseMessages.getString(PKG, "System.Combo.No"));
 
             }
         }
@@ -1361,6 +1381,16 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
             wSizeFieldName.setText(in.getSizeField());
         }
 
+        wStreamingMode.setSelection(in.isStreamingMode());
+        wLineDelimited.setSelection(in.isLineDelimited());
+        wJsonProvider.select(in.getJsonProvider().ordinal());
+        wPrefetchFiles.setText("" + in.getPrefetchFiles());
+        wMemoryMappedFiles.setSelection(in.isMemoryMappedFiles());
+        wFilePartitioning.select(in.getFilePartitioning().ordinal());
+        wParseWorkers.setText("" + in.getParseWorkers());
+        wResultCacheEntries.setText("" + in.getResultCacheEntries());
+        wResultCacheSize.setText("" + in.getResultCacheSize());
+
         wStepname.selectAll();
         wStepname.setFocus();
     }
@@ -1429,6 +1459,7 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
             field.setGroupSymbol(item.getText(9));
             field.setTrimType(ValueMetaBase.getTrimTypeByDesc(item.getText(10)));
             field.setRepeated(BaseMessages.getString(PKG, "System.Combo.Yes").equalsIgnoreCase(item.getText(11)));
+            field.setRawJson(BaseMessages.getString(PKG, "System.Combo.Yes").equalsIgnoreCase(item.getText(12)));
 
             in.getInputFields()[i] = field;
         }
@@ -1440,6 +1471,20 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
         in.setRootUriField(wRootUriName.getText());
         in.setExtensionField(wExtensionFieldName.getText());
         in.setSizeField(wSizeFieldName.getText());
+
+        in.setStreamingMode(wStreamingMode.getSelection());
+        in.setLineDelimited(wLineDelimited.getSelection());
+        if (wJsonProvider.getSelectionIndex() >= 0) {
+            in.setJsonProvider(JsonInputMeta.JsonProviderType.values()[wJsonProvider.getSelectionIndex()]);
+        }
+        in.setPrefetchFiles(Const.toInt(wPrefetchFiles.getText(), 0));
+        in.setMemoryMappedFiles(wMemoryMappedFiles.getSelection());
+        if (wFilePartitioning.getSelectionIndex() >= 0) {
+            in.setFilePartitioning(JsonInputMeta.FilePartitioning.values()[wFilePartitioning.getSelectionIndex()]);
+        }
+        in.setParseWorkers(Const.toInt(wParseWorkers.getText(), 0));
+        in.setResultCacheEntries(Const.toInt(wResultCacheEntries.getText(), 0));
+        in.setResultCacheSize(Const.toInt(wResultCacheSize.getText(), 0));
     }
 
     // Preview the data
@@ -1669,4 +1714,118 @@ public class JsonInputDialog extends BaseStepDialog implements StepDialogInterfa
         // ///////////////////////////////////////////////////////////
 
     }
+
+    private void addPerformanceTab() {
+        // ////////////////////////
+        // START OF PERFORMANCE TAB ///
+        // ////////////////////////
+        wPerformanceTab = new CTabItem(wTabFolder, SWT.NONE);
+        wPerformanceTab.setText(BaseMessages.getString(PKG, "JsonInputDialog.PerformanceTab.TabTitle"));
+
+        wPerformanceComp = new Composite(wTabFolder, SWT.NONE);
+        props.setLook(wPerformanceComp);
+
+        FormLayout performanceLayout = new FormLayout();
+        performanceLayout.marginWidth = 3;
+        performanceLayout.marginHeight = 3;
+        wPerformanceComp.setLayout(performanceLayout);
+
+        wStreamingMode = addPerformanceCheck("StreamingMode", null);
+        wLineDelimited = addPerformanceCheck("LineDelimited", wStreamingMode);
+
+        String[] providers = new String[JsonInputMeta.JsonProviderType.values().length];
+        for (int i = 0; i < providers.length; i++) {
+            providers[i] = BaseMessages.getString(PKG,
+                    "JsonInputDialog.JsonProvider." + JsonInputMeta.JsonProviderType.values()[i].name());
+        }
+        wJsonProvider = addPerformanceCombo("JsonProvider", wLineDelimited, providers);
+
+        wPrefetchFiles = addPerformanceText("PrefetchFiles", wJsonProvider);
+        wMemoryMappedFiles = addPerformanceCheck("MemoryMappedFiles", wPrefetchFiles);
+
+        String[] partitionings = new String[JsonInputMeta.FilePartitioning.values().length];
+        for (int i = 0; i < partitionings.length; i++) {
+            partitionings[i] = BaseMessages.getString(PKG,
+                    "JsonInputDialog.FilePartitioning." + JsonInputMeta.FilePartitioning.values()[i].name());
+        }
+        wFilePartitioning = addPerformanceCombo("FilePartitioning", wMemoryMappedFiles, partitionings);
+
+        wParseWorkers = addPerformanceText("ParseWorkers", wFilePartitioning);
+        wResultCacheEntries = addPerformanceText("ResultCacheEntries", wParseWorkers);
+        wResultCacheSize = addPerformanceText("ResultCacheSize", wResultCacheEntries);
+
+        FormData fdPerformanceComp = new FormData();
+        fdPerformanceComp.left = new FormAttachment(0, 0);
+        fdPerformanceComp.top = new FormAttachment(0, 0);
+        fdPerformanceComp.right = new FormAttachment(100, 0);
+        fdPerformanceComp.bottom = new FormAttachment(100, 0);
+        wPerformanceComp.setLayoutData(fdPerformanceComp);
+
+        wPerformanceComp.layout();
+        wPerformanceTab.setControl(wPerformanceComp);
+
+        // ///////////////////////////////////////////////////////////
+        // / END OF PERFORMANCE TAB
+        // ///////////////////////////////////////////////////////////
+    }
+
+    /**
+     * adds a label for the performance tab option with the given message key, below <code>above</code>
+     */
+    private void addPerformanceLabel(String key, Control above) {
+        Label label = new Label(wPerformanceComp, SWT.RIGHT);
+        label.setText(BaseMessages.getString(PKG, "JsonInputDialog." + key + ".Label"));
+        props.setLook(label);
+        FormData fdLabel = new FormData();
+        fdLabel.left = new FormAttachment(0, 0);
+        fdLabel.top = above == null ? new FormAttachment(0, margin) : new FormAttachment(above, margin);
+        fdLabel.right = new FormAttachment(middle, -margin);
+        label.setLayoutData(fdLabel);
+    }
+
+    private FormData getPerformanceLayoutData(Control above) {
+        FormData fdControl = new FormData();
+        fdControl.left = new FormAttachment(middle, 0);
+        fdControl.top = above == null ? new FormAttachment(0, margin) : new FormAttachment(above, margin);
+        return fdControl;
+    }
+
+    private Button addPerformanceCheck(String key, Control above) {
+        addPerformanceLabel(key, above);
+        Button check = new Button(wPerformanceComp, SWT.CHECK);
+        props.setLook(check);
+        check.setToolTipText(BaseMessages.getString(PKG, "JsonInputDialog." + key + ".Tooltip"));
+        check.addSelectionListener(new SelectionAdapter() {
+            public void widgetSelected(SelectionEvent e) {
+                input.setChanged();
+            }
+        });
+        check.setLayoutData(getPerformanceLayoutData(above));
+        return check;
+    }
+
+    private Text addPerformanceText(String key, Control above) {
+        addPerformanceLabel(key, above);
+        Text text = new Text(wPerformanceComp, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(text);
+        text.setToolTipText(BaseMessages.getString(PKG, "JsonInputDialog." + key + ".Tooltip"));
+        text.addModifyListener(lsMod);
+        FormData fdText = getPerformanceLayoutData(above);
+        fdText.right = new FormAttachment(100, -margin);
+        text.setLayoutData(fdText);
+        return text;
+    }
+
+    private CCombo addPerformanceCombo(String key, Control above, String[] items) {
+        addPerformanceLabel(key, above);
+        CCombo combo = new CCombo(wPerformanceComp, SWT.BORDER | SWT.READ_ONLY);
+        props.setLook(combo);
+        combo.setItems(items);
+        combo.setToolTipText(BaseMessages.getString(PKG, "JsonInputDialog." + key + ".Tooltip"));
+        combo.addModifyListener(lsMod);
+        FormData fdCombo = getPerformanceLayoutData(above);
+        fdCombo.right = new FormAttachment(100, -margin);
+        combo.setLayoutData(fdCombo);
+        return combo;
+    }
 }
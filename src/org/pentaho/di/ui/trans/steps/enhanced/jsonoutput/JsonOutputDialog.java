@@ -185,6 +185,10 @@ public class JsonOutputDialog extends BaseStepDialog implements StepDialogInterf
     private Group wSettings;
     private FormData fdSettings;
 
+    private Composite wPerformanceComp;
+    private Button wStreamingGeneration, wLineDelimited, wFileArray;
+    private Text wOutputBufferSize, wSplitFileRows, wSplitFileSize;
+
     private Map<String, Integer> inputFields;
 
     public JsonOutputDialog(Shell parent, Object in, TransMeta transMeta, String sname) {
@@ -473,6 +477,8 @@ public class JsonOutputDialog extends BaseStepDialog implements StepDialogInterf
         // END OF Additional Fields Configuration TAB
         // ///////////////////////////////////////////////////////////
 
+        addPerformanceTab(lsMod, middle, margin);
+
 
         //
         // Search the fields in the background
@@ -550,6 +556,9 @@ public class JsonOutputDialog extends BaseStepDialog implements StepDialogInterf
         };
 
         wStepname.addSelectionListener(lsDef);
+        wOutputBufferSize.addSelectionListener(lsDef);
+        wSplitFileRows.addSelectionListener(lsDef);
+        wSplitFileSize.addSelectionListener(lsDef);
         // Detect X or ALT-F4 or something that kills this window...
         shell.addShellListener(new ShellAdapter() {
             public void shellClosed(ShellEvent e) {
@@ -585,6 +594,80 @@ public class JsonOutputDialog extends BaseStepDialog implements StepDialogInterf
         return stepname;
     }
 
+    private void addPerformanceTab(ModifyListener lsMod, int middle, int margin) {
+        // ////////////////////////
+        // START OF Performance TAB///
+        // /
+        CTabItem wPerformanceTab = new CTabItem(wTabFolder, SWT.NONE);
+        wPerformanceTab.setText(BaseMessages.getString(PKG, "JsonOutputDialog.PerformanceTab.TabTitle"));
+
+        FormLayout performanceLayout = new FormLayout();
+        performanceLayout.marginWidth = 3;
+        performanceLayout.marginHeight = 3;
+
+        wPerformanceComp = new Composite(wTabFolder, SWT.NONE);
+        props.setLook(wPerformanceComp);
+        wPerformanceComp.setLayout(performanceLayout);
+
+        wStreamingGeneration = addPerformanceCheck("StreamingGeneration", null, middle, margin);
+        wOutputBufferSize = addPerformanceText("OutputBufferSize", wStreamingGeneration, lsMod, middle, margin);
+        wLineDelimited = addPerformanceCheck("LineDelimited", wOutputBufferSize, middle, margin);
+        wFileArray = addPerformanceCheck("FileArray", wLineDelimited, middle, margin);
+        wSplitFileRows = addPerformanceText("SplitFileRows", wFileArray, lsMod, middle, margin);
+        wSplitFileSize = addPerformanceText("SplitFileSize", wSplitFileRows, lsMod, middle, margin);
+
+        wPerformanceComp.layout();
+        wPerformanceTab.setControl(wPerformanceComp);
+
+        // ///////////////////////////////////////////////////////////
+        // / END OF Performance TAB
+        // ///////////////////////////////////////////////////////////
+    }
+
+    /**
+     * adds a label for the performance tab option with the given message key, below <code>above</code>
+     */
+    private FormData addPerformanceLabel(String key, Control above, int middle, int margin) {
+        Label label = new Label(wPerformanceComp, SWT.RIGHT);
+        label.setText(BaseMessages.getString(PKG, "JsonOutputDialog." + key + ".Label"));
+        props.setLook(label);
+        FormData fdLabel = new FormData();
+        fdLabel.left = new FormAttachment(0, 0);
+        fdLabel.top = above == null ? new FormAttachment(0, margin) : new FormAttachment(above, margin);
+        fdLabel.right = new FormAttachment(middle, -margin);
+        label.setLayoutData(fdLabel);
+
+        FormData fdControl = new FormData();
+        fdControl.left = new FormAttachment(middle, 0);
+        fdControl.top = above == null ? new FormAttachment(0, margin) : new FormAttachment(above, margin);
+        return fdControl;
+    }
+
+    private Button addPerformanceCheck(String key, Control above, int middle, int margin) {
+        FormData fdCheck = addPerformanceLabel(key, above, middle, margin);
+        Button check = new Button(wPerformanceComp, SWT.CHECK);
+        props.setLook(check);
+        check.setToolTipText(BaseMessages.getString(PKG, "JsonOutputDialog." + key + ".Tooltip"));
+        check.addSelectionListener(new SelectionAdapter() {
+            public void widgetSelected(SelectionEvent e) {
+                input.setChanged();
+            }
+        });
+        check.setLayoutData(fdCheck);
+        return check;
+    }
+
+    private Text addPerformanceText(String key, Control above, ModifyListener lsMod, int middle, int margin) {
+        FormData fdText = addPerformanceLabel(key, above, middle, margin);
+        Text text = new Text(wPerformanceComp, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        props.setLook(text);
+        text.setToolTipText(BaseMessages.getString(PKG, "JsonOutputDialog." + key + ".Tooltip"));
+        text.addModifyListener(lsMod);
+        fdText.right = new FormAttachment(100, -margin);
+        text.setLayoutData(fdText);
+        return text;
+    }
+
     private void createSettingsGroup(ModifyListener lsMod, int middle, int margin, Composite wGeneralComp) {
         // ////////////////////////
         // START OF Settings GROUP
@@ -1156,6 +1239,13 @@ public class JsonOutputDialog extends BaseStepDialog implements StepDialogInterf
         wJSONPageStartAtFieldname.setText(Const.NVL(input.getJsonPageStartsAtFieldname(), ""));
         wJSONPageEndAtFieldname.setText(Const.NVL(input.getJsonPageEndsAtFieldname(), ""));
 
+        wStreamingGeneration.setSelection(input.isStreamingGeneration());
+        wOutputBufferSize.setText(Integer.toString(input.getOutputBufferSize()));
+        wLineDelimited.setSelection(input.isLineDelimited());
+        wFileArray.setSelection(input.isFileArray());
+        wSplitFileRows.setText(Integer.toString(input.getSplitFileRows()));
+        wSplitFileSize.setText(Long.toString(input.getSplitFileSize()));
+
         if (isDebug()) {
             logDebug(BaseMessages.getString(PKG, "JsonOutputDialog.Log.GettingFieldsInfo"));
         }
@@ -1229,6 +1319,14 @@ public class JsonOutputDialog extends BaseStepDialog implements StepDialogInterf
         jsometa.setJsonPageStartsAtFieldname(wJSONPageStartAtFieldname.getText());
         jsometa.setJsonPageEndsAtFieldname(wJSONPageEndAtFieldname.getText());
 
+        jsometa.setStreamingGeneration(wStreamingGeneration.getSelection());
+        jsometa.setOutputBufferSize(
+                Const.toInt(wOutputBufferSize.getText(), JsonOutputMeta.DEFAULT_OUTPUT_BUFFER_SIZE));
+        jsometa.setLineDelimited(wLineDelimited.getSelection());
+        jsometa.setFileArray(wFileArray.getSelection());
+        jsometa.setSplitFileRows(Const.toInt(wSplitFileRows.getText(), 0));
+        jsometa.setSplitFileSize(Const.toLong(wSplitFileSize.getText(), 0L));
+
         int nrKeyFields = wKeyFields.nrNonEmpty();
 
         jsometa.allocateKey(nrKeyFields);
@@ -28,7 +28,10 @@ import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.OutputStream;
+import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -236,6 +239,32 @@ public class JsonInputTest {
     Assert.assertEquals( "lines written", 2, jsonInput.getLinesWritten() );
   }
 
+  @Test
+  public void testMixedPathsSharedSteps() throws Exception {
+    JsonInputField color = new JsonInputField( "color" );
+    color.setPath( "$.store.bicycle.color" );
+    color.setType( ValueMetaInterface.TYPE_STRING );
+    JsonInputField price = new JsonInputField( "price" );
+    price.setPath( "$.store.bicycle['price']" );
+    price.setType( ValueMetaInterface.TYPE_NUMBER );
+    JsonInputField expensive = new JsonInputField( "expensive" );
+    expensive.setPath( "$.store.book[?(@.price > 20)].title" );
+    expensive.setType( ValueMetaInterface.TYPE_STRING );
+    JsonInputField last = new JsonInputField( "last" );
+    last.setPath( "$..book[-1:].author" );
+    last.setType( ValueMetaInterface.TYPE_STRING );
+
+    JsonInputMeta meta = createSimpleMeta( "json", color, price, expensive, last );
+    meta.setRemoveSourceField( true );
+    JsonInput jsonInput = createJsonInput( "json", meta, new Object[] { getBasicTestJson() } );
+    RowComparatorListener rowComparator = new RowComparatorListener(
+        new Object[] { "red", 19.95, "The Lord of the Rings", "J. R. R. Tolkien" } );
+    jsonInput.addRowListener( rowComparator );
+    processRows( jsonInput, 2 );
+    Assert.assertEquals( "error", 0, jsonInput.getErrors() );
+    Assert.assertEquals( "lines written", 1, jsonInput.getLinesWritten() );
+  }
+
   @Test
   public void testDualExpMismatchError() throws Exception {
     ByteArrayOutputStream out = new ByteArrayOutputStream();
@@ -676,6 +705,198 @@ public class JsonInputTest {
   }
 
 
+  @Test
+  public void testFileListPrefetch() throws Exception {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    helper.redirectLog( err, LogLevel.ERROR );
+
+    final String[] inputs = {
+      "{ \"book\": [ { \"price\": 1 }, { \"price\": 2 } ] }",
+      "{ \"book\": [ { \"price\": 3 } ] }",
+      "{ \"book\": [ { \"price\": ",
+      "{ \"book\": [ { \"price\": 4 }, { \"price\": 5 } ] }",
+      "{ \"book\": [ { \"price\": 6 } ] }" };
+    try {
+      List<FileObject> fileList = new ArrayList<>();
+      for ( int i = 0; i < inputs.length; i++ ) {
+        FileObject fileObj = KettleVFS.getFileObject( BASE_RAM_DIR + "test" + i + ".json" );
+        try ( OutputStream out = fileObj.getContent().getOutputStream() ) {
+          out.write( inputs[ i ].getBytes() );
+        }
+        fileList.add( fileObj );
+      }
+      JsonInputField price = new JsonInputField( "price" );
+      price.setType( ValueMetaInterface.TYPE_INTEGER );
+      price.setPath( "$.book[*].price" );
+      JsonInputMeta meta = createFileListMeta( fileList );
+      meta.setInputFields( new JsonInputField[] { price } );
+      meta.setShortFileNameField( "fname" );
+      meta.setPrefetchFiles( 2 );
+
+      // streaming rows are read ahead too
+      for ( boolean streaming : new boolean[] { false, true } ) {
+        meta.setStreamingMode( streaming );
+        err.reset();
+        JsonInput jsonInput = createJsonInput( meta );
+        RowComparatorListener rowComparator = new RowComparatorListener(
+            new Object[] { 1L, "test0.json" },
+            new Object[] { 2L, "test0.json" },
+            new Object[] { 3L, "test1.json" },
+            new Object[] { 4L, "test3.json" },
+            new Object[] { 5L, "test3.json" },
+            new Object[] { 6L, "test4.json" } );
+        jsonInput.addRowListener( rowComparator );
+
+        processRows( jsonInput, 10 );
+        Assert.assertEquals( "rows written", 6, jsonInput.getLinesWritten() );
+        Assert.assertEquals( err.toString(), 1, jsonInput.getErrors() );
+        Assert.assertTrue( err.toString().contains( "test2.json" ) );
+      }
+    } finally {
+      deleteFiles();
+    }
+  }
+
+  @Test
+  public void testFilePartitioning() throws Exception {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    helper.redirectLog( err, LogLevel.ERROR );
+
+    final int[] sizes = { 100, 10, 60, 50, 10 };
+    try {
+      List<FileObject> fileList = new ArrayList<>();
+      for ( int i = 0; i < sizes.length; i++ ) {
+        FileObject fileObj = KettleVFS.getFileObject( BASE_RAM_DIR + "test" + i + ".json" );
+        StringBuilder content = new StringBuilder( "{\"nr\":" + i + "}" );
+        while ( content.length() < sizes[ i ] ) {
+          content.append( ' ' );
+        }
+        try ( OutputStream out = fileObj.getContent().getOutputStream() ) {
+          out.write( content.toString().getBytes() );
+        }
+        fileList.add( fileObj );
+      }
+      JsonInputField nr = new JsonInputField( "nr" );
+      nr.setType( ValueMetaInterface.TYPE_INTEGER );
+      nr.setPath( "$.nr" );
+      JsonInputMeta meta = createFileListMeta( fileList );
+      meta.setInputFields( new JsonInputField[] { nr } );
+
+      meta.setFilePartitioning( JsonInputMeta.FilePartitioning.ROUND_ROBIN );
+      JsonInput jsonInput = createSecondOfTwoCopies( meta );
+      jsonInput.addRowListener( new RowComparatorListener( new Object[] { 1L }, new Object[] { 3L } ) );
+      processRows( jsonInput, 3 );
+      Assert.assertEquals( "round robin", 2, jsonInput.getLinesWritten() );
+
+      meta.setFilePartitioning( JsonInputMeta.FilePartitioning.SIZE_BALANCED );
+      jsonInput = createSecondOfTwoCopies( meta );
+      jsonInput.addRowListener( new RowComparatorListener( new Object[] { 2L }, new Object[] { 3L } ) );
+      processRows( jsonInput, 3 );
+      Assert.assertEquals( "size balanced", 2, jsonInput.getLinesWritten() );
+
+      assertEquals( err.toString(), 0, jsonInput.getErrors() );
+    } finally {
+      deleteFiles();
+    }
+  }
+
+  @Test
+  public void testNullFilePartitioning() throws Exception {
+    JsonInputMeta meta = new JsonInputMeta();
+    meta.setDefault();
+    meta.setFilePartitioning( null );
+    assertEquals( JsonInputMeta.FilePartitioning.NONE, meta.getFilePartitioning() );
+    Assert.assertTrue( meta.getXML().contains( "<filePartitioning>NONE</filePartitioning>" ) );
+  }
+
+  @Test
+  public void testNullJsonProvider() throws Exception {
+    JsonInputMeta meta = new JsonInputMeta();
+    meta.setDefault();
+    meta.setJsonProvider( null );
+    assertEquals( JsonInputMeta.JsonProviderType.JSON_SMART, meta.getJsonProvider() );
+    Assert.assertTrue( meta.getXML().contains( "<jsonProvider>JSON_SMART</jsonProvider>" ) );
+  }
+
+  @Test
+  public void testLineDelimitedByteRanges() throws Exception {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    helper.redirectLog( err, LogLevel.ERROR );
+
+    // second range starts within line 2, which the first range reads to its end
+    final String input = "{\"id\":1,\"s\":\"0123456789\"}\n"
+        + "{\"id\":2}\n"
+        + "{\"id\":3}\n"
+        + "{\"id\":4}\n";
+    try ( FileObject fileObj = KettleVFS.getFileObject( BASE_RAM_DIR + "test.ndjson" ) ) {
+      try ( OutputStream out = fileObj.getContent().getOutputStream() ) {
+        out.write( input.getBytes( StandardCharsets.UTF_8 ) );
+      }
+      JsonInputField id = new JsonInputField( "id" );
+      id.setPath( "$.id" );
+      id.setType( ValueMetaInterface.TYPE_INTEGER );
+      JsonInputMeta meta = createFileListMeta( Arrays.asList( fileObj ) );
+      meta.setInputFields( new JsonInputField[] { id } );
+      meta.setLineDelimited( true );
+      meta.setFilePartitioning( JsonInputMeta.FilePartitioning.BYTE_RANGES );
+
+      JsonInput jsonInput = createSecondOfTwoCopies( meta );
+      jsonInput.addRowListener( new RowComparatorListener( new Object[] { 3L }, new Object[] { 4L } ) );
+      processRows( jsonInput, 3 );
+      Assert.assertEquals( err.toString(), 0, jsonInput.getErrors() );
+      Assert.assertEquals( 2, jsonInput.getLinesWritten() );
+    } finally {
+      deleteFiles();
+    }
+  }
+
+  @Test
+  public void testLocalFile() throws Exception {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    helper.redirectLog( err, LogLevel.ERROR );
+
+    File file = File.createTempFile( "jsonInput", ".json" );
+    try {
+      try ( OutputStream out = new FileOutputStream( file ) ) {
+        out.write( "{ \"a\": [ { \"id\": 1 }, { \"id\": 2 } ] }".getBytes( StandardCharsets.UTF_8 ) );
+      }
+      JsonInputField id = new JsonInputField( "id" );
+      id.setPath( "$.a[*].id" );
+      id.setType( ValueMetaInterface.TYPE_INTEGER );
+      JsonInputMeta meta = createFileListMeta( Arrays.asList( KettleVFS.getFileObject( file.getAbsolutePath() ) ) );
+      meta.setInputFields( new JsonInputField[] { id } );
+      for ( boolean mapped : new boolean[] { true, false } ) {
+        meta.setMemoryMappedFiles( mapped );
+        JsonInput jsonInput = createJsonInput( meta );
+        jsonInput.addRowListener( new RowComparatorListener( new Object[] { 1L }, new Object[] { 2L } ) );
+        processRows( jsonInput, 3 );
+        Assert.assertEquals( err.toString(), 0, jsonInput.getErrors() );
+        Assert.assertEquals( 2, jsonInput.getLinesWritten() );
+      }
+      // no mapping left to keep it locked
+      Assert.assertTrue( file.delete() );
+    } finally {
+      file.delete();
+    }
+  }
+
+  private JsonInput createSecondOfTwoCopies( JsonInputMeta meta ) {
+    JsonInput jsonInput =
+        new JsonInput( helper.stepMeta, helper.stepDataInterface, 1, helper.transMeta, helper.trans ) {
+      @Override
+      public int getUniqueStepNrAcrossSlaves() {
+        return 1;
+      }
+
+      @Override
+      public int getUniqueStepCountAcrossSlaves() {
+        return 2;
+      }
+    };
+    jsonInput.init( meta, new JsonInputData() );
+    return jsonInput;
+  }
+
   @Test
   public void testNoFilesInListError() throws Exception {
     ByteArrayOutputStream err = new ByteArrayOutputStream();
@@ -895,6 +1116,598 @@ public class JsonInputTest {
     Assert.assertEquals( "rows written", 1, jsonInput.getLinesWritten() );
   }
 
+  @Test
+  public void testStreamingMode() throws Exception {
+    JsonInputField author = new JsonInputField( "author" );
+    author.setPath( "$.store.book[*].author" );
+    author.setType( ValueMetaInterface.TYPE_STRING );
+    JsonInputField price = new JsonInputField( "price" );
+    price.setPath( "$.store.book[*].price" );
+    price.setType( ValueMetaInterface.TYPE_NUMBER );
+    JsonInputField isbn = new JsonInputField( "isbn" );
+    isbn.setPath( "$.store.book[*][?(@.isbn)].isbn" );
+    isbn.setType( ValueMetaInterface.TYPE_STRING );
+
+    JsonInputMeta meta = createSimpleMeta( "json", author, price, isbn );
+    meta.setRemoveSourceField( true );
+    meta.setStreamingMode( true );
+    JsonInput jsonInput = createJsonInput( "json", meta, new Object[] { getBasicTestJson() } );
+    RowComparatorListener rowComparator = new RowComparatorListener(
+        new Object[] { "Nigel Rees", 8.95d, null },
+        new Object[] { "Evelyn Waugh", 12.99d, null },
+        new Object[] { "Herman Melville", 8.99d, "0-553-21311-3" },
+        new Object[] { "J. R. R. Tolkien", 22.99d, "0-395-19395-8" } );
+    jsonInput.addRowListener( rowComparator );
+    processRows( jsonInput, 5 );
+    Assert.assertEquals( "errors", 0, jsonInput.getErrors() );
+    Assert.assertEquals( "rows written", 4, jsonInput.getLinesWritten() );
+  }
+
+  @Test
+  public void testStreamingModeSameResults() throws Exception {
+    final String input = getBasicTestJson();
+    for ( String path : new String[] {
+      "$..book[?(@.isbn)].author", "$.store.bicycle.color", "$.['store'].['bicycle'].['color']", "$..book[2].title",
+      "$.store.book[1].title", "$.store.bicycle[*]" } ) {
+      JsonInputField field = new JsonInputField( "out" );
+      field.setPath( path );
+      field.setType( ValueMetaInterface.TYPE_STRING );
+
+      JsonInputMeta meta = createSimpleMeta( "json", field );
+      final List<Object> expected = new ArrayList<>();
+      JsonInput jsonInput = createJsonInput( "json", meta, new Object[] { input } );
+      jsonInput.addRowListener( new RowAdapter() {
+        @Override
+        public void rowWrittenEvent( RowMetaInterface rowMeta, Object[] row ) throws KettleStepException {
+          expected.add( row[1] );
+        }
+      } );
+      processRows( jsonInput, 10 );
+
+      meta = createSimpleMeta( "json", field );
+      meta.setStreamingMode( true );
+      final List<Object> actual = new ArrayList<>();
+      jsonInput = createJsonInput( "json", meta, new Object[] { input } );
+      jsonInput.addRowListener( new RowAdapter() {
+        @Override
+        public void rowWrittenEvent( RowMetaInterface rowMeta, Object[] row ) throws KettleStepException {
+          actual.add( row[1] );
+        }
+      } );
+      processRows( jsonInput, 10 );
+      Assert.assertEquals( path, 0, jsonInput.getErrors() );
+      Assert.assertFalse( path, expected.isEmpty() );
+      Assert.assertEquals( path, expected, actual );
+    }
+  }
+
+  @Test
+  public void testStreamingModeConcatenatedDocs() throws Exception {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    helper.redirectLog( err, LogLevel.ERROR );
+
+    final String input = "{ \"items\": [ { \"a\": 1 }, { \"a\": 2 } ] }\n{ \"items\": [ { \"a\": 3 } ] }";
+    try ( FileObject fileObj = KettleVFS.getFileObject( BASE_RAM_DIR + "test.json" ) ) {
+      try ( OutputStream out = fileObj.getContent().getOutputStream() ) {
+        out.write( input.getBytes() );
+      }
+      JsonInputField aField = new JsonInputField( "a" );
+      aField.setPath( "$.items[*].a" );
+      aField.setType( ValueMetaInterface.TYPE_INTEGER );
+
+      JsonInputMeta meta = createFileListMeta( Arrays.asList( fileObj ) );
+      meta.setInputFields( new JsonInputField[] { aField } );
+      meta.setStreamingMode( true );
+      JsonInput jsonInput = createJsonInput( meta );
+      RowComparatorListener rowComparator = new RowComparatorListener(
+          new Object[] { 1L },
+          new Object[] { 2L },
+          new Object[] { 3L } );
+      jsonInput.addRowListener( rowComparator );
+      processRows( jsonInput, 4 );
+      Assert.assertEquals( err.toString(), 0, jsonInput.getErrors() );
+      Assert.assertEquals( "rows written", 3, jsonInput.getLinesWritten() );
+    } finally {
+      deleteFiles();
+    }
+  }
+
+  @Test
+  public void testStreamingModeMissingValuesInRecord() throws Exception {
+    final String input = "{ \"items\": [ { \"a\": 1, \"b\": 1 }, { \"b\": 2 }, { \"a\": 3 } ] }";
+    JsonInputField aField = new JsonInputField( "a" );
+    aField.setPath( "$.items[*].a" );
+    aField.setType( ValueMetaInterface.TYPE_INTEGER );
+    JsonInputField bField = new JsonInputField( "b" );
+    bField.setPath( "$.items[*].b" );
+    bField.setType( ValueMetaInterface.TYPE_INTEGER );
+
+    JsonInputMeta meta = createSimpleMeta( "json", aField, bField );
+    meta.setRemoveSourceField( true );
+    meta.setStreamingMode( true );
+    JsonInput jsonInput = createJsonInput( "json", meta, new Object[] { input } );
+    RowComparatorListener rowComparator = new RowComparatorListener(
+        new Object[] { 1L, 1L },
+        new Object[] { null, 2L },
+        new Object[] { 3L, null } );
+    jsonInput.addRowListener( rowComparator );
+    processRows( jsonInput, 4 );
+    Assert.assertEquals( "errors", 0, jsonInput.getErrors() );
+    Assert.assertEquals( "rows written", 3, jsonInput.getLinesWritten() );
+  }
+
+  @Test
+  public void testStreamingModeErrors() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    helper.redirectLog( out, LogLevel.ERROR );
+    JsonInputField field = new JsonInputField( "value" );
+    field.setPath( "$.value" );
+    field.setType( ValueMetaInterface.TYPE_STRING );
+
+    try ( LocaleChange enUS = new LocaleChange( Locale.US ) ) {
+      JsonInputMeta meta = createSimpleMeta( "json", field );
+      meta.setStreamingMode( true );
+      JsonInput jsonInput =
+          createJsonInput( "json", meta, new Object[] { "{{" }, new Object[] { "{ \"other\": 1 }" },
+              new Object[] { "{ \"value\": \"ok\" }" } );
+      RowComparatorListener rowComparator = new RowComparatorListener( new Object[] { null, "ok" } );
+      rowComparator.setComparator( 0, null );
+      jsonInput.addRowListener( rowComparator );
+      processRows( jsonInput, 4 );
+
+      Assert.assertEquals( "errors", 2, jsonInput.getErrors() );
+      Assert.assertEquals( "rows written", 1, jsonInput.getLinesWritten() );
+      String errors = IOUtils.toString( new ByteArrayInputStream( out.toByteArray() ), StandardCharsets.UTF_8.name() );
+      Assert.assertTrue( "parse error", errors.contains( "Error parsing string" ) );
+      Assert.assertTrue( "missing path", errors.contains( "We can not find any data with path [$.value]" ) );
+    }
+  }
+
+  @Test
+  public void testLineDelimited() throws Exception {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    helper.redirectLog( err, LogLevel.ERROR );
+
+    final String input = "{ \"id\": 1, \"tags\": [ \"a\", \"b\" ] }\n"
+        + "\n"
+        + "{ \"id\": 2 }\r\n"
+        + "{ \"id\": 3, \"tags\": [ \"c\" ] }\n";
+    try ( FileObject fileObj = KettleVFS.getFileObject( BASE_RAM_DIR + "test.ndjson" ) ) {
+      try ( OutputStream out = fileObj.getContent().getOutputStream() ) {
+        out.write( input.getBytes( StandardCharsets.UTF_8 ) );
+      }
+      JsonInputField id = new JsonInputField( "id" );
+      id.setPath( "$.id" );
+      id.setType( ValueMetaInterface.TYPE_INTEGER );
+      JsonInputField tag = new JsonInputField( "tag" );
+      tag.setPath( "$.tags[*]" );
+      tag.setType( ValueMetaInterface.TYPE_STRING );
+
+      JsonInputMeta meta = createFileListMeta( Arrays.asList( fileObj ) );
+      meta.setInputFields( new JsonInputField[] { id, tag } );
+      meta.setLineDelimited( true );
+      JsonInput jsonInput = createJsonInput( meta );
+      RowComparatorListener rowComparator = new RowComparatorListener(
+          new Object[] { 1L, "a" },
+          new Object[] { null, "b" },
+          new Object[] { 2L, null },
+          new Object[] { 3L, "c" } );
+      jsonInput.addRowListener( rowComparator );
+      processRows( jsonInput, 5 );
+      Assert.assertEquals( err.toString(), 0, jsonInput.getErrors() );
+      Assert.assertEquals( "rows written", 4, jsonInput.getLinesWritten() );
+    } finally {
+      deleteFiles();
+    }
+  }
+
+  @Test
+  public void testLineDelimitedBadLine() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    helper.redirectLog( out, LogLevel.ERROR );
+    JsonInputField field = new JsonInputField( "value" );
+    field.setPath( "$.value" );
+    field.setType( ValueMetaInterface.TYPE_STRING );
+
+    try ( LocaleChange enUS = new LocaleChange( Locale.US ) ) {
+      JsonInputMeta meta = createSimpleMeta( "json", field );
+      meta.setRemoveSourceField( true );
+      meta.setLineDelimited( true );
+      JsonInput jsonInput = createJsonInput( "json", meta,
+          new Object[] { "{ \"value\": \"a\" }\n{ \"value\": \n{ \"value\": \"c\" }" },
+          new Object[] { "{ \"value\": \"d\" }" } );
+      RowComparatorListener rowComparator = new RowComparatorListener( new Object[] { "a" }, new Object[] { "d" } );
+      jsonInput.addRowListener( rowComparator );
+      processRows( jsonInput, 3 );
+
+      Assert.assertEquals( "errors", 1, jsonInput.getErrors() );
+      Assert.assertEquals( "rows written", 2, jsonInput.getLinesWritten() );
+      String errors = IOUtils.toString( new ByteArrayInputStream( out.toByteArray() ), StandardCharsets.UTF_8.name() );
+      Assert.assertTrue( "line error", errors.contains( "Error parsing line 2!" ) );
+    }
+  }
+
+  @Test
+  public void testRowLimitStopsReading() throws Exception {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    helper.redirectLog( err, LogLevel.ERROR );
+    JsonInputField id = new JsonInputField( "id" );
+    id.setPath( "$.a[*].id" );
+    id.setType( ValueMetaInterface.TYPE_INTEGER );
+
+    JsonInputMeta meta = createSimpleMeta( "json", id );
+    meta.setRemoveSourceField( true );
+    meta.setStreamingMode( true );
+    meta.setRowLimit( 2 );
+    // not read past the limit
+    JsonInput jsonInput = createJsonInput( "json", meta,
+        new Object[] { "{ \"a\": [ { \"id\": 1 }, { \"id\": 2 }, { \"id\": 3 }, unparseable" } );
+    jsonInput.addRowListener( new RowComparatorListener( new Object[] { 1L }, new Object[] { 2L } ) );
+    processRows( jsonInput, 3 );
+    Assert.assertEquals( err.toString(), 0, jsonInput.getErrors() );
+    Assert.assertEquals( 2, jsonInput.getLinesWritten() );
+  }
+
+  @Test
+  public void testValueConversions() throws Exception {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    helper.redirectLog( err, LogLevel.ERROR );
+    final String input = "{ \"int\": 1, \"long\": 12345678901, \"dbl\": 2.5, \"bool\": true, \"str\": \"3\", "
+        + "\"obj\": { \"k\": 1 } }";
+    JsonInputField[] fields = {
+      createField( "int", "$.int", ValueMetaInterface.TYPE_INTEGER ),
+      createField( "long", "$.long", ValueMetaInterface.TYPE_INTEGER ),
+      createField( "intAsNumber", "$.int", ValueMetaInterface.TYPE_NUMBER ),
+      createField( "dbl", "$.dbl", ValueMetaInterface.TYPE_NUMBER ),
+      createField( "intAsBigNumber", "$.int", ValueMetaInterface.TYPE_BIGNUMBER ),
+      createField( "dblAsBigNumber", "$.dbl", ValueMetaInterface.TYPE_BIGNUMBER ),
+      createField( "bool", "$.bool", ValueMetaInterface.TYPE_BOOLEAN ),
+      createField( "strAsInt", "$.str", ValueMetaInterface.TYPE_INTEGER ),
+      createField( "intAsStr", "$.int", ValueMetaInterface.TYPE_STRING ),
+      createField( "missing", "$.none", ValueMetaInterface.TYPE_INTEGER ) };
+
+    JsonInputMeta meta = createSimpleMeta( "json", fields );
+    meta.setRemoveSourceField( true );
+    meta.setDefaultPathLeafToNull( true );
+    meta.setIgnoreMissingPath( true );
+    JsonInput jsonInput = createJsonInput( "json", meta, new Object[] { input } );
+    RowComparatorListener rowComparator = new RowComparatorListener( new Object[] {
+      1L, 12345678901L, 1d, 2.5d, new BigDecimal( 1 ), new BigDecimal( "2.5" ), true, 3L, "1", null } );
+    jsonInput.addRowListener( rowComparator );
+    processRows( jsonInput, 2 );
+    Assert.assertEquals( err.toString(), 0, jsonInput.getErrors() );
+    Assert.assertEquals( 1, jsonInput.getLinesWritten() );
+  }
+
+  @Test
+  public void testRawJsonField() throws Exception {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    helper.redirectLog( err, LogLevel.ERROR );
+    final String input = "{ \"a\": [ { \"id\": 1, \"obj\": { \"k\" : [ 1, 2 ] } }, { \"id\": 2, \"obj\": [] } ] }";
+    JsonInputField obj = createField( "obj", "$.a[*].obj", ValueMetaInterface.TYPE_STRING );
+    obj.setRawJson( true );
+    JsonInputField[] fields = { createField( "id", "$.a[*].id", ValueMetaInterface.TYPE_INTEGER ), obj };
+
+    JsonInputMeta meta = createSimpleMeta( "json", fields );
+    meta.setRemoveSourceField( true );
+    meta.setStreamingMode( true );
+    JsonInput jsonInput = createJsonInput( "json", meta, new Object[] { input } );
+    jsonInput.addRowListener( new RowComparatorListener(
+        new Object[] { 1L, "{ \"k\" : [ 1, 2 ] }" },
+        new Object[] { 2L, "[]" } ) );
+    processRows( jsonInput, 3 );
+    Assert.assertEquals( err.toString(), 0, jsonInput.getErrors() );
+    Assert.assertEquals( 2, jsonInput.getLinesWritten() );
+
+    // written back from the parsed value otherwise
+    meta.setStreamingMode( false );
+    jsonInput = createJsonInput( "json", meta, new Object[] { input } );
+    jsonInput.addRowListener( new RowComparatorListener(
+        new Object[] { 1L, "{\"k\":[1,2]}" },
+        new Object[] { 2L, "[]" } ) );
+    processRows( jsonInput, 3 );
+    Assert.assertEquals( err.toString(), 0, jsonInput.getErrors() );
+
+    // still given as text when another field reads into it
+    meta.setStreamingMode( true );
+    meta.setIgnoreMissingPath( true );
+    meta.setInputFields( new JsonInputField[] { fields[ 0 ], obj,
+      createField( "k", "$.a[*].obj.k[1]", ValueMetaInterface.TYPE_INTEGER ) } );
+    jsonInput = createJsonInput( "json", meta, new Object[] { input } );
+    jsonInput.addRowListener( new RowComparatorListener(
+        new Object[] { 1L, "{ \"k\" : [ 1, 2 ] }", 2L },
+        new Object[] { 2L, "[]", null } ) );
+    processRows( jsonInput, 3 );
+    Assert.assertEquals( err.toString(), 0, jsonInput.getErrors() );
+    Assert.assertEquals( 2, jsonInput.getLinesWritten() );
+  }
+
+  @Test
+  public void testRawJsonFieldPlanNotShared() throws Exception {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    helper.redirectLog( err, LogLevel.ERROR );
+    final String input = "{ \"a\": [ { \"id\": 1, \"obj\": { \"k\": [ 1, 2 ] } } ] }";
+    JsonInputField obj = createField( "obj", "$.a[*].obj", ValueMetaInterface.TYPE_STRING );
+    JsonInputMeta meta = createSimpleMeta( "json",
+        createField( "id", "$.a[*].id", ValueMetaInterface.TYPE_INTEGER ), obj );
+    meta.setRemoveSourceField( true );
+    meta.setStreamingMode( true );
+
+    // same paths, raw first: the plan compiled for the raw field must not be reused
+    obj.setRawJson( true );
+    JsonInput jsonInput = createJsonInput( "json", meta, new Object[] { input } );
+    jsonInput.addRowListener( new RowComparatorListener( new Object[] { 1L, "{ \"k\": [ 1, 2 ] }" } ) );
+    processRows( jsonInput, 2 );
+    Assert.assertEquals( err.toString(), 0, jsonInput.getErrors() );
+
+    obj.setRawJson( false );
+    jsonInput = createJsonInput( "json", meta, new Object[] { input } );
+    jsonInput.addRowListener( new RowComparatorListener( new Object[] { 1L, "{\"k\":[1,2]}" } ) );
+    processRows( jsonInput, 2 );
+    Assert.assertEquals( err.toString(), 0, jsonInput.getErrors() );
+    Assert.assertEquals( 1, jsonInput.getLinesWritten() );
+  }
+
+  @Test
+  public void testProjectedParsing() throws Exception {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    helper.redirectLog( err, LogLevel.ERROR );
+    final String input = "{ \"attachment\": \"QUJD\", \"a\": [ "
+        + "{ \"id\": 1, \"audit\": [ { \"who\": \"x\" } ], "
+        + "\"tags\": [ \"t0\", { \"big\": [ 1, 2 ] }, \"t2\", \"t3\" ] }, "
+        + "{ \"id\": 2, \"tags\": [ \"u0\" ], \"m\": { \"k\": 3 } } ] }";
+    JsonInputField[] fields = {
+      createField( "id", "$.a[*].id", ValueMetaInterface.TYPE_INTEGER ),
+      createField( "tag", "$.a[*].tags[2]", ValueMetaInterface.TYPE_STRING ),
+      createField( "m", "$.a[*].m", ValueMetaInterface.TYPE_STRING ) };
+
+    JsonInputMeta meta = createSimpleMeta( "json", fields );
+    meta.setRemoveSourceField( true );
+    meta.setDefaultPathLeafToNull( true );
+    meta.setIgnoreMissingPath( true );
+    meta.setJsonProvider( JsonInputMeta.JsonProviderType.JACKSON_STREAMING );
+    for ( boolean streaming : new boolean[] { false, true } ) {
+      meta.setStreamingMode( streaming );
+      JsonInput jsonInput = createJsonInput( "json", meta, new Object[] { input } );
+      jsonInput.addRowListener( new RowComparatorListener(
+          new Object[] { 1L, "t2", null },
+          new Object[] { 2L, null, "{\"k\":3}" } ) );
+      processRows( jsonInput, 3 );
+      Assert.assertEquals( err.toString(), 0, jsonInput.getErrors() );
+      Assert.assertEquals( 2, jsonInput.getLinesWritten() );
+    }
+  }
+
+  @Test
+  public void testFilteredRecordPath() throws Exception {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    helper.redirectLog( err, LogLevel.ERROR );
+    final String input = "{ \"events\": [ "
+        + "{ \"type\": \"view\", \"amount\": 1, \"items\": [ 1, 2, 3 ] }, "
+        + "{ \"items\": [ 4 ], \"type\": \"purchase\", \"amount\": 2, \"sku\": \"a\" }, "
+        + "{ \"amount\": 3 }, "
+        + "{ \"type\": \"purchase\", \"amount\": 4 } ] }";
+    JsonInputField[] fields = {
+      createField( "amount", "$.events[?(@.type == 'purchase')].amount", ValueMetaInterface.TYPE_INTEGER ),
+      createField( "sku", "$.events[?(@.type == 'purchase')].sku", ValueMetaInterface.TYPE_STRING ) };
+
+    JsonInputMeta meta = createSimpleMeta( "json", fields );
+    meta.setRemoveSourceField( true );
+    meta.setDefaultPathLeafToNull( true );
+    for ( boolean streaming : new boolean[] { false, true } ) {
+      meta.setStreamingMode( streaming );
+      JsonInput jsonInput = createJsonInput( "json", meta, new Object[] { input } );
+      jsonInput.addRowListener( new RowComparatorListener(
+          new Object[] { 2L, "a" },
+          new Object[] { 4L, null } ) );
+      processRows( jsonInput, 3 );
+      Assert.assertEquals( err.toString(), 0, jsonInput.getErrors() );
+      Assert.assertEquals( 2, jsonInput.getLinesWritten() );
+    }
+  }
+
+  @Test
+  public void testParseWorkersKeepRowOrder() throws Exception {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    helper.redirectLog( err, LogLevel.ERROR );
+    final int nbRows = 500;
+    final int badRow = 123;
+    Object[][] inputRows = new Object[ nbRows ][];
+    List<Object[]> expected = new ArrayList<>();
+    for ( int i = 0; i < nbRows; i++ ) {
+      if ( i == badRow ) {
+        inputRows[ i ] = new Object[] { "{ \"a\": [ { \"id\": " };
+      } else {
+        inputRows[ i ] = new Object[] { "{ \"a\": [ { \"id\": " + i + " }, { \"id\": -" + i + " } ] }" };
+        expected.add( new Object[] { (long) i } );
+        expected.add( new Object[] { (long) -i } );
+      }
+    }
+
+    JsonInputMeta meta = createSimpleMeta( "json", createField( "id", "$.a[*].id", ValueMetaInterface.TYPE_INTEGER ) );
+    meta.setRemoveSourceField( true );
+    meta.setParseWorkers( 3 );
+    JsonInput jsonInput = createJsonInput( "json", meta, inputRows );
+    jsonInput.addRowListener( new RowComparatorListener( expected.toArray( new Object[ expected.size() ][] ) ) );
+    processRows( jsonInput, nbRows * 2 + 1 );
+    Assert.assertEquals( "errors", 1, jsonInput.getErrors() );
+    Assert.assertEquals( "rows written", expected.size(), jsonInput.getLinesWritten() );
+  }
+
+  @Test
+  public void testNonAsciiFieldValue() throws Exception {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    helper.redirectLog( err, LogLevel.ERROR );
+    final String input = "\uFEFF{ \"a\": [ { \"name\": \"caf\u00e9 \u00fcn\u00ef\", \"obj\": { \"k\": \"\u20ac\" } }, "
+        + "{ \"name\": \"\u65e5\u672c\", \"obj\": [ \"\u00e9\" ] } ] }";
+    JsonInputField obj = createField( "obj", "$.a[*].obj", ValueMetaInterface.TYPE_STRING );
+    obj.setRawJson( true );
+    JsonInputField[] fields = { createField( "name", "$.a[*].name", ValueMetaInterface.TYPE_STRING ), obj };
+
+    JsonInputMeta meta = createSimpleMeta( "json", fields );
+    meta.setRemoveSourceField( true );
+    for ( boolean streaming : new boolean[] { false, true } ) {
+      meta.setStreamingMode( streaming );
+      JsonInput jsonInput = createJsonInput( "json", meta, new Object[] { input } );
+      jsonInput.addRowListener( new RowComparatorListener(
+          new Object[] { "caf\u00e9 \u00fcn\u00ef", streaming ? "{ \"k\": \"\u20ac\" }" : "{\"k\":\"\u20ac\"}" },
+          new Object[] { "\u65e5\u672c", streaming ? "[ \"\u00e9\" ]" : "[\"\u00e9\"]" } ) );
+      processRows( jsonInput, 3 );
+      Assert.assertEquals( err.toString(), 0, jsonInput.getErrors() );
+      Assert.assertEquals( 2, jsonInput.getLinesWritten() );
+    }
+  }
+
+  @Test
+  public void testResultCacheRepeatedValues() throws Exception {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    helper.redirectLog( err, LogLevel.ERROR );
+    final String reference = "{ \"a\": [ { \"id\": 1, \"name\": \"one\" }, { \"id\": 2, \"name\": \"two\" } ] }";
+    final String other = "{ \"a\": [ { \"id\": 3, \"name\": \"three\" } ] }";
+    JsonInputField[] fields = {
+      createField( "id", "$.a[*].id", ValueMetaInterface.TYPE_INTEGER ),
+      createField( "name", "$.a[*].name", ValueMetaInterface.TYPE_STRING ) };
+
+    JsonInputMeta meta = createSimpleMeta( "json", fields );
+    meta.setRemoveSourceField( true );
+    meta.setResultCacheEntries( 1 );
+    JsonInputData data = new JsonInputData();
+    JsonInput jsonInput = createJsonInput( "json", meta, data,
+        new Object[] { reference }, new Object[] { reference }, new Object[] { other }, new Object[] { "{ \"a\": [" },
+        new Object[] { "{ \"a\": [" }, new Object[] { reference } );
+    jsonInput.addRowListener( new RowComparatorListener(
+        new Object[] { 1L, "one" }, new Object[] { 2L, "two" },
+        new Object[] { 1L, "one" }, new Object[] { 2L, "two" },
+        new Object[] { 3L, "three" },
+        new Object[] { 1L, "one" }, new Object[] { 2L, "two" } ) );
+    processRows( jsonInput, 8 );
+    Assert.assertEquals( "errors", 2, jsonInput.getErrors() );
+    Assert.assertEquals( 7, jsonInput.getLinesWritten() );
+    Assert.assertEquals( "hits", 1, data.resultCache.getHits() );
+    Assert.assertEquals( "misses", 5, data.resultCache.getMisses() );
+    Assert.assertEquals( "evictions", 2, data.resultCache.getEvictions() );
+  }
+
+  @Test
+  public void testResultCacheSizeLimit() throws Exception {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    helper.redirectLog( err, LogLevel.ERROR );
+    // short text, but many rows
+    StringBuilder input = new StringBuilder( "[ 0" );
+    for ( int i = 1; i < 50; i++ ) {
+      input.append( ", " ).append( i % 10 );
+    }
+    input.append( " ]" );
+    JsonInputMeta meta = createSimpleMeta( "json", createField( "value", "$[*]", ValueMetaInterface.TYPE_INTEGER ) );
+    meta.setRemoveSourceField( true );
+    meta.setResultCacheEntries( 10 );
+    meta.setResultCacheSize( 1 );
+    JsonInputData data = new JsonInputData();
+    JsonInput jsonInput = createJsonInput( "json", meta, data,
+        new Object[] { input.toString() }, new Object[] { input.toString() } );
+    processRows( jsonInput, 101 );
+    Assert.assertEquals( err.toString(), 0, jsonInput.getErrors() );
+    Assert.assertEquals( 100, jsonInput.getLinesWritten() );
+    Assert.assertEquals( "hits", 0, data.resultCache.getHits() );
+    Assert.assertEquals( "misses", 2, data.resultCache.getMisses() );
+
+    meta.setResultCacheSize( 0 );
+    data = new JsonInputData();
+    jsonInput = createJsonInput( "json", meta, data,
+        new Object[] { input.toString() }, new Object[] { input.toString() } );
+    processRows( jsonInput, 101 );
+    Assert.assertEquals( 100, jsonInput.getLinesWritten() );
+    Assert.assertEquals( "hits", 1, data.resultCache.getHits() );
+  }
+
+  private static JsonInputField createField( String name, String path, int type ) {
+    JsonInputField field = new JsonInputField( name );
+    field.setPath( path );
+    field.setType( type );
+    return field;
+  }
+
+  @Test
+  public void testNestedRecordPaths() throws Exception {
+    final String input = "{ \"orders\": [ "
+        + "{ \"lines\": [ { \"sku\": \"a\", \"qty\": 1 }, { \"sku\": \"b\" } ] }, "
+        + "{ \"lines\": [] }, "
+        + "{ \"lines\": [ { \"sku\": \"c\", \"qty\": 3 } ] } ] }";
+    JsonInputField sku = new JsonInputField( "sku" );
+    sku.setPath( "$.orders[*].lines[*].sku" );
+    sku.setType( ValueMetaInterface.TYPE_STRING );
+    JsonInputField qty = new JsonInputField( "qty" );
+    qty.setPath( "$.orders[*].lines[*]['qty']" );
+    qty.setType( ValueMetaInterface.TYPE_INTEGER );
+
+    JsonInputMeta meta = createSimpleMeta( "json", sku, qty );
+    meta.setRemoveSourceField( true );
+    meta.setDefaultPathLeafToNull( true );
+    JsonInput jsonInput = createJsonInput( "json", meta, new Object[] { input } );
+    RowComparatorListener rowComparator = new RowComparatorListener(
+        new Object[] { "a", 1L },
+        new Object[] { "b", null },
+        new Object[] { "c", 3L } );
+    jsonInput.addRowListener( rowComparator );
+    processRows( jsonInput, 4 );
+    Assert.assertEquals( "errors", 0, jsonInput.getErrors() );
+    Assert.assertEquals( "rows written", 3, jsonInput.getLinesWritten() );
+  }
+
+  @Test
+  public void testRecordPathMisalignedFields() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    helper.redirectLog( out, LogLevel.ERROR );
+
+    JsonInputField isbn = new JsonInputField( "isbn" );
+    isbn.setPath( "$.store.book[*].isbn" );
+    isbn.setType( ValueMetaInterface.TYPE_STRING );
+    JsonInputField price = new JsonInputField( "price" );
+    price.setPath( "$.store.book[*].price" );
+    price.setType( ValueMetaInterface.TYPE_NUMBER );
+
+    JsonInputMeta meta = createSimpleMeta( "json", isbn, price );
+    meta.setRemoveSourceField( true );
+    JsonInput jsonInput = createJsonInput( "json", meta, new Object[] { getBasicTestJson() } );
+    RowComparatorListener rowComparator = new RowComparatorListener(
+        new Object[] { null, 8.95d },
+        new Object[] { null, 12.99d },
+        new Object[] { "0-553-21311-3", 8.99d },
+        new Object[] { "0-395-19395-8", 22.99d } );
+    jsonInput.addRowListener( rowComparator );
+
+    processRows( jsonInput, 5 );
+    Assert.assertEquals( out.toString(), 0, jsonInput.getErrors() );
+    Assert.assertEquals( "rows written", 4, jsonInput.getLinesWritten() );
+  }
+
+  @Test
+  public void testRecordPathRepeatedValues() throws Exception {
+    final String input = "{ \"items\": [ "
+        + "{ \"id\": 1, \"tags\": [ \"a\", \"b\" ] }, "
+        + "{ \"id\": 2, \"tags\": [] }, "
+        + "{ \"id\": 3, \"tags\": [ \"c\" ] } ] }";
+    JsonInputField id = new JsonInputField( "id" );
+    id.setPath( "$.items[*].id" );
+    id.setType( ValueMetaInterface.TYPE_INTEGER );
+    JsonInputField tag = new JsonInputField( "tag" );
+    tag.setPath( "$.items[*].tags[*]" );
+    tag.setType( ValueMetaInterface.TYPE_STRING );
+
+    JsonInputMeta meta = createSimpleMeta( "json", id, tag );
+    meta.setRemoveSourceField( true );
+    JsonInput jsonInput = createJsonInput( "json", meta, new Object[] { input } );
+    RowComparatorListener rowComparator = new RowComparatorListener(
+        new Object[] { 1L, "a" },
+        new Object[] { null, "b" },
+        new Object[] { 2L, null },
+        new Object[] { 3L, "c" } );
+    jsonInput.addRowListener( rowComparator );
+    processRows( jsonInput, 5 );
+    Assert.assertEquals( "errors", 0, jsonInput.getErrors() );
+    Assert.assertEquals( "rows written", 4, jsonInput.getLinesWritten() );
+  }
+
   protected JsonInputMeta createSimpleMeta( String inputColumn, JsonInputField ... jsonPathFields ) {
     JsonInputMeta jsonInputMeta = new JsonInputMeta();
     jsonInputMeta.setDefault();
@@ -975,8 +1788,11 @@ public class JsonInputTest {
   }
 
   protected JsonInput createJsonInput( final String inCol, JsonInputMeta meta, Object[]... inputRows ) {
-    JsonInputData data = new JsonInputData();
+    return createJsonInput( inCol, meta, new JsonInputData(), inputRows );
+  }
 
+  protected JsonInput createJsonInput( final String inCol, JsonInputMeta meta, JsonInputData data,
+      Object[]... inputRows ) {
     JsonInput jsonInput = new JsonInput( helper.stepMeta, helper.stepDataInterface, 0, helper.transMeta, helper.trans );
 
     RowSet input = helper.getMockInputRowSet( inputRows );
@@ -0,0 +1,181 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.enhanced.jsoninput;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.pentaho.di.core.KettleClientEnvironment;
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.logging.LogChannel;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.JsonInputMeta.JsonProviderType;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.FastJsonReader;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.IJsonReader;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.JsonProviders;
+import org.pentaho.di.trans.steps.enhanced.jsoninput.reader.StreamingJsonReader;
+
+/**
+ * Compares the JSON parser backends on a few document shapes, for both readers. Not a unit test: run its main method
+ * to print the timings.
+ */
+public class JsonProviderBenchmark {
+
+  private static final int WARMUP_RUNS = 3;
+  private static final int RUNS = 5;
+
+  private static class Shape {
+    final String name;
+    final byte[] json;
+    final JsonInputField[] fields;
+
+    Shape( String name, String json, JsonInputField... fields ) {
+      this.name = name;
+      this.json = json.getBytes( StandardCharsets.UTF_8 );
+      this.fields = fields;
+    }
+  }
+
+  public static void main( String[] args ) throws Exception {
+    KettleClientEnvironment.init();
+    LogChannelInterface log = new LogChannel( "JsonProviderBenchmark" );
+    int records = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 100000;
+
+    Shape[] shapes = {
+      new Shape( "flat", flatRecords( records ),
+        field( "id", "$.data[*].id", ValueMetaInterface.TYPE_INTEGER ),
+        field( "name", "$.data[*].name", ValueMetaInterface.TYPE_STRING ),
+        field( "price", "$.data[*].price", ValueMetaInterface.TYPE_NUMBER ) ),
+      new Shape( "wide", wideRecords( records / 10, 50 ),
+        field( "f0", "$.data[*].f0", ValueMetaInterface.TYPE_STRING ),
+        field( "f49", "$.data[*].f49", ValueMetaInterface.TYPE_STRING ) ),
+      new Shape( "deep", deepRecords( records, 8 ),
+        field( "leaf", "$.data[*].l0.l1.l2.l3.l4.l5.l6.l7", ValueMetaInterface.TYPE_INTEGER ) ),
+      new Shape( "strings", bigStrings( records / 100, 10000 ),
+        field( "text", "$.data[*].text", ValueMetaInterface.TYPE_STRING ) ),
+    };
+
+    System.out.println( String.format( "%-8s %-10s %-18s %10s %12s %10s", "shape", "reader", "provider", "ms",
+      "rows/s", "MB/s" ) );
+    for ( Shape shape : shapes ) {
+      for ( JsonProviderType type : JsonProviderType.values() ) {
+        report( shape, "tree", type, new FastJsonReader( shape.fields, false, log ) );
+        report( shape, "streaming", type, new StreamingJsonReader( shape.fields, false, log ) );
+      }
+    }
+  }
+
+  private static void report( Shape shape, String readerName, JsonProviderType type, IJsonReader reader )
+    throws Exception {
+    reader.setJsonProvider( JsonProviders.create( type ) );
+    long rows = 0;
+    for ( int i = 0; i < WARMUP_RUNS; i++ ) {
+      rows = readAll( reader, shape.json );
+    }
+    long best = Long.MAX_VALUE;
+    for ( int i = 0; i < RUNS; i++ ) {
+      long start = System.nanoTime();
+      readAll( reader, shape.json );
+      best = Math.min( best, System.nanoTime() - start );
+    }
+    double seconds = best / 1e9;
+    System.out.println( String.format( "%-8s %-10s %-18s %10.1f %12.0f %10.1f", shape.name, readerName, type,
+      best / 1e6, rows / seconds, shape.json.length / seconds / ( 1 << 20 ) ) );
+  }
+
+  private static long readAll( IJsonReader reader, byte[] json ) throws Exception {
+    RowSet rows = reader.parse( new ByteArrayInputStream( json ) );
+    long count = 0;
+    while ( rows.getRow() != null ) {
+      count++;
+    }
+    return count;
+  }
+
+  private static JsonInputField field( String name, String path, int type ) {
+    JsonInputField field = new JsonInputField( name );
+    field.setPath( path );
+    field.setType( type );
+    return field;
+  }
+
+  private static String flatRecords( int count ) {
+    StringBuilder sb = new StringBuilder( "{\"data\":[" );
+    for ( int i = 0; i < count; i++ ) {
+      if ( i > 0 ) {
+        sb.append( ',' );
+      }
+      sb.append( "{\"id\":" ).append( i ).append( ",\"name\":\"item " ).append( i ).append( "\",\"price\":" )
+        .append( i * 0.25 ).append( ",\"active\":" ).append( i % 2 == 0 ).append( '}' );
+    }
+    return sb.append( "]}" ).toString();
+  }
+
+  private static String wideRecords( int count, int width ) {
+    StringBuilder sb = new StringBuilder( "{\"data\":[" );
+    for ( int i = 0; i < count; i++ ) {
+      sb.append( i > 0 ? ",{" : "{" );
+      for ( int f = 0; f < width; f++ ) {
+        if ( f > 0 ) {
+          sb.append( ',' );
+        }
+        sb.append( "\"f" ).append( f ).append( "\":\"v" ).append( i ).append( '.' ).append( f ).append( '"' );
+      }
+      sb.append( '}' );
+    }
+    return sb.append( "]}" ).toString();
+  }
+
+  private static String deepRecords( int count, int depth ) {
+    StringBuilder sb = new StringBuilder( "{\"data\":[" );
+    for ( int i = 0; i < count; i++ ) {
+      if ( i > 0 ) {
+        sb.append( ',' );
+      }
+      for ( int d = 0; d < depth; d++ ) {
+        sb.append( "{\"l" ).append( d ).append( "\":" );
+      }
+      sb.append( i );
+      for ( int d = 0; d < depth; d++ ) {
+        sb.append( '}' );
+      }
+    }
+    return sb.append( "]}" ).toString();
+  }
+
+  private static String bigStrings( int count, int length ) {
+    StringBuilder text = new StringBuilder( length );
+    for ( int i = 0; i < length; i++ ) {
+      text.append( (char) ( 'a' + i % 26 ) );
+    }
+    StringBuilder sb = new StringBuilder( "{\"data\":[" );
+    for ( int i = 0; i < count; i++ ) {
+      if ( i > 0 ) {
+        sb.append( ',' );
+      }
+      sb.append( "{\"text\":\"" ).append( text ).append( "\"}" );
+    }
+    return sb.append( "]}" ).toString();
+  }
+}
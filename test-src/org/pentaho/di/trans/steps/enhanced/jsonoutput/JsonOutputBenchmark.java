@@ -0,0 +1,163 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.enhanced.jsonoutput;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ObjectNode;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBoolean;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+/**
+ * Compares the ways a chunk of rows can be written under a JSON block name: the former serialize, parse and serialize
+ * again round trip, the items tree written in a single pass, and rows streamed to the generator. Not a unit test: run
+ * its main method to print the timings.
+ */
+public class JsonOutputBenchmark {
+
+    private static final int WARMUP_RUNS = 3;
+    private static final int RUNS = 5;
+    private static final String BLOC = "data";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private abstract static class Generation {
+        final String name;
+
+        Generation(String name) {
+            this.name = name;
+        }
+
+        abstract String generate(List<Object[]> rows) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int maxChunkSize = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+        RowMetaInterface rowMeta = new RowMeta();
+        rowMeta.addValueMeta(new ValueMetaInteger("id"));
+        rowMeta.addValueMeta(new ValueMetaString("name"));
+        rowMeta.addValueMeta(new ValueMetaNumber("price"));
+        rowMeta.addValueMeta(new ValueMetaBoolean("active"));
+        final JsonOutputField[] fields = new JsonOutputField[rowMeta.size()];
+        final int[] fieldIndexes = new int[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = new JsonOutputField();
+            fields[i].setFieldName(rowMeta.getValueMeta(i).getName());
+            fields[i].setElementName(rowMeta.getValueMeta(i).getName());
+            fieldIndexes[i] = i;
+        }
+        final JsonRowWriter rowWriter = new JsonRowWriter(rowMeta, fieldIndexes, fields, MAPPER);
+
+        Generation[] generations = {
+            new Generation("round trip") {
+                @Override
+                String generate(List<Object[]> rows) throws Exception {
+                    ObjectNode bloc = MAPPER.createObjectNode();
+                    bloc.put(BLOC, MAPPER.readTree(MAPPER.writeValueAsString(createItems(rows, fields))));
+                    return MAPPER.writeValueAsString(bloc);
+                }
+            },
+            new Generation("single pass") {
+                @Override
+                String generate(List<Object[]> rows) throws Exception {
+                    return MAPPER.writeValueAsString(Collections.singletonMap(BLOC, createItems(rows, fields)));
+                }
+            },
+            new Generation("streaming") {
+                @Override
+                String generate(List<Object[]> rows) throws Exception {
+                    StringWriter text = new StringWriter();
+                    JsonGenerator generator = MAPPER.getJsonFactory().createJsonGenerator(text);
+                    generator.writeStartObject();
+                    generator.writeFieldName(BLOC);
+                    generator.writeStartArray();
+                    for (Object[] row : rows) {
+                        rowWriter.write(generator, row);
+                    }
+                    generator.writeEndArray();
+                    generator.writeEndObject();
+                    generator.close();
+                    return text.toString();
+                }
+            },
+        };
+
+        System.out.println(String.format("%-12s %10s %10s %10s", "generation", "rows", "ms", "MB/s"));
+        for (int chunkSize = 1000; chunkSize <= maxChunkSize; chunkSize *= 10) {
+            List<Object[]> rows = createRows(chunkSize);
+            for (Generation generation : generations) {
+                report(generation, rows);
+            }
+        }
+    }
+
+    private static void report(Generation generation, List<Object[]> rows) throws Exception {
+        int length = 0;
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            length = generation.generate(rows).length();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            generation.generate(rows);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.println(String.format("%-12s %10d %10.1f %10.1f", generation.name, rows.size(), best / 1e6,
+                length / (best / 1e9) / (1 << 20)));
+    }
+
+    private static List<Object[]> createRows(int count) {
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[]{(long) i, "item " + i, i * 0.25, i % 2 == 0});
+        }
+        return rows;
+    }
+
+    /**
+     * One object per row, as the step builds them.
+     */
+    private static List<ObjectNode> createItems(List<Object[]> rows, JsonOutputField[] fields) {
+        List<ObjectNode> items = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            ObjectNode item = MAPPER.createObjectNode();
+            item.put(fields[0].getElementName(), (Long) row[0]);
+            item.put(fields[1].getElementName(), (String) row[1]);
+            item.put(fields[2].getElementName(), (Double) row[2]);
+            item.put(fields[3].getElementName(), (Boolean) row[3]);
+            items.add(item);
+        }
+        return items;
+    }
+}
@@ -23,18 +23,22 @@
 package org.pentaho.di.trans.steps.enhanced.jsonoutput;
 
 import java.io.File;
+import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import junit.framework.TestCase;
 
 import org.apache.commons.io.FileUtils;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.junit.Assert;
 import org.pentaho.di.TestUtilities;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.logging.LoggingObjectInterface;
 import org.pentaho.di.core.plugins.PluginRegistry;
@@ -307,6 +311,43 @@ public class JsonOutputTest extends TestCase {
     }
 
     public String test() throws Exception {
+        return test(false);
+    }
+
+    public String test(boolean streamingGeneration) throws Exception {
+        return test(streamingGeneration, 0);
+    }
+
+    public String test(boolean streamingGeneration, int splitOutputAfter) throws Exception {
+        JsonOutputMeta settings = new JsonOutputMeta();
+        settings.setStreamingGeneration(streamingGeneration);
+        settings.setSplitOutputAfter(splitOutputAfter);
+        String jsonFileName = runTransformation(settings);
+
+        // get the results and return it
+        File outputFile = new File(jsonFileName + ".js");
+        String jsonStructure = FileUtils.readFileToString(outputFile);
+
+        return jsonStructure;
+    }
+
+    /**
+     * @param settings
+     *          generation and split options of the output step
+     * @return the base name of the output files
+     */
+    private String runTransformation(JsonOutputMeta settings) throws Exception {
+        String jsonFileName = TestUtilities.createEmptyTempFile("testJsonOutput1_");
+        runTransformation(settings, jsonFileName);
+        return jsonFileName;
+    }
+
+    /**
+     * @param settings
+     *          generation and split options of the output step, and its output fields if any
+     * @return the finished transformation
+     */
+    private Trans runTransformation(JsonOutputMeta settings, String jsonFileName) throws Exception {
         KettleEnvironment.init();
 
         // Create a new transformation...
@@ -329,10 +370,19 @@ public class JsonOutputTest extends TestCase {
         transMeta.addTransHop(hop_injectory_rowGenerator);
 
         // create the json output step
-        // but first lets get a filename
-        String jsonFileName = TestUtilities.createEmptyTempFile("testJsonOutput1_");
         StepMeta jsonOutputStep = createJsonOutputStep("json output step", jsonFileName, registry);
         //((JsonOutputMeta) jsonOutputStep.getStepMetaInterface()).setCompatibilityMode(compatibilityMode);
+        JsonOutputMeta jsonOutputMeta = (JsonOutputMeta) jsonOutputStep.getStepMetaInterface();
+        jsonOutputMeta.setStreamingGeneration(settings.isStreamingGeneration());
+        jsonOutputMeta.setLineDelimited(settings.isLineDelimited());
+        jsonOutputMeta.setFileArray(settings.isFileArray());
+        jsonOutputMeta.setSplitOutputAfter(settings.getSplitOutputAfter());
+        jsonOutputMeta.setSplitFileRows(settings.getSplitFileRows());
+        jsonOutputMeta.setSplitFileSize(settings.getSplitFileSize());
+        jsonOutputMeta.setFileAppended(settings.isFileAppended());
+        if (settings.getOutputFields() != null) {
+            jsonOutputMeta.setOutputFields(settings.getOutputFields());
+        }
         transMeta.addStep(jsonOutputStep);
 
         // create a TransHopMeta for jsonOutputStep and add it to the transMeta
@@ -361,11 +411,7 @@ public class JsonOutputTest extends TestCase {
         trans.startThreads();
         trans.waitUntilFinished();
 
-        // get the results and return it
-        File outputFile = new File(jsonFileName + ".js");
-        String jsonStructure = FileUtils.readFileToString(outputFile);
-
-        return jsonStructure;
+        return trans;
     }
 
     // The actual tests
@@ -375,6 +421,144 @@ public class JsonOutputTest extends TestCase {
         Assert.assertTrue(jsonEquals(EXPECTED_NON_COMPATIBILITY_JSON, jsonStructure));
     }
 
+    public void testStreamingGeneration() throws Exception {
+        String jsonStructure = test(true);
+        Assert.assertTrue(jsonEquals(EXPECTED_NON_COMPATIBILITY_JSON, jsonStructure));
+    }
+
+    public void testChunksWrittenToSameFile() throws Exception {
+        for (boolean streamingGeneration : new boolean[] {false, true}) {
+            String jsonStructure = test(streamingGeneration, 4);
+            // 10 rows: chunks of 4, 4 and 2, one after the other
+            Iterator<JsonNode> chunks = new ObjectMapper().reader(JsonNode.class).readValues(jsonStructure);
+            int rows = 0;
+            int count = 0;
+            while (chunks.hasNext()) {
+                rows += chunks.next().get("data").size();
+                count++;
+            }
+            Assert.assertEquals(3, count);
+            Assert.assertEquals(10, rows);
+        }
+    }
+
+    public void testSplitFiles() throws Exception {
+        // tree generation, streaming generation, and appended files
+        for (int i = 0; i < 3; i++) {
+            JsonOutputMeta settings = new JsonOutputMeta();
+            settings.setStreamingGeneration(i == 1);
+            settings.setFileAppended(i == 2);
+            settings.setSplitFileRows(4);
+            String jsonFileName = runTransformation(settings);
+            // 10 rows: files of 4, 4 and 2, and none left open ahead
+            int[] expectedRows = {4, 4, 2};
+            for (int j = 0; j < expectedRows.length; j++) {
+                File outputFile = new File(jsonFileName + "_" + j + ".js");
+                JsonNode json = new ObjectMapper().readTree(FileUtils.readFileToString(outputFile));
+                Assert.assertEquals(expectedRows[j], json.get("data").size());
+            }
+            Assert.assertFalse(new File(jsonFileName + "_3.js").exists());
+            Assert.assertFalse(new File(jsonFileName + ".js").exists());
+        }
+    }
+
+    public void testSplitFilesBySize() throws Exception {
+        for (boolean lineDelimited : new boolean[] {false, true}) {
+            JsonOutputMeta settings = new JsonOutputMeta();
+            settings.setLineDelimited(lineDelimited);
+            settings.setFileArray(!lineDelimited);
+            settings.setSplitFileSize(100);
+            String jsonFileName = runTransformation(settings);
+            // rows of 32 to 37 bytes: a new file once a row takes the size past 100
+            int[] expectedRows = {3, 3, 3, 1};
+            for (int i = 0; i < expectedRows.length; i++) {
+                File outputFile = new File(jsonFileName + "_" + i + ".js");
+                String json = FileUtils.readFileToString(outputFile);
+                int rows = lineDelimited
+                        ? json.split("\n").length : new ObjectMapper().readTree(json).get("data").size();
+                Assert.assertEquals(expectedRows[i], rows);
+                if (i < expectedRows.length - 1) {
+                    Assert.assertTrue(outputFile.length() >= 100);
+                }
+            }
+            Assert.assertFalse(new File(jsonFileName + "_4.js").exists());
+        }
+    }
+
+    public void testLineDelimited() throws Exception {
+        // chunks make no difference to line delimited rows
+        for (int splitOutputAfter : new int[] {0, 4}) {
+            JsonOutputMeta settings = new JsonOutputMeta();
+            settings.setLineDelimited(true);
+            settings.setSplitOutputAfter(splitOutputAfter);
+            String jsonFileName = runTransformation(settings);
+            String json = FileUtils.readFileToString(new File(jsonFileName + ".js"));
+            Assert.assertTrue(json.endsWith("\n"));
+            String[] lines = json.split("\n");
+            Assert.assertEquals(10, lines.length);
+            for (String line : lines) {
+                JsonNode row = new ObjectMapper().readTree(line);
+                Assert.assertTrue(row.isObject());
+                Assert.assertEquals("Orlando", row.get("city").getTextValue());
+            }
+        }
+    }
+
+    public void testFileArray() throws Exception {
+        // chunks of 3 rows all go to the one array of the file
+        JsonOutputMeta settings = new JsonOutputMeta();
+        settings.setFileArray(true);
+        settings.setSplitOutputAfter(3);
+        String jsonFileName = runTransformation(settings);
+        String jsonStructure = FileUtils.readFileToString(new File(jsonFileName + ".js"));
+        Assert.assertTrue(jsonEquals(EXPECTED_NON_COMPATIBILITY_JSON, jsonStructure));
+
+        // each file has its own array
+        settings.setSplitFileRows(4);
+        jsonFileName = runTransformation(settings);
+        int[] expectedRows = {4, 4, 2};
+        for (int i = 0; i < expectedRows.length; i++) {
+            File outputFile = new File(jsonFileName + "_" + i + ".js");
+            JsonNode json = new ObjectMapper().readTree(FileUtils.readFileToString(outputFile));
+            Assert.assertEquals(expectedRows[i], json.get("data").size());
+        }
+    }
+
+    public void testInvalidJsonFragmentFailsRow() throws Exception {
+        RowMetaInterface rowMeta = new RowMeta();
+        rowMeta.addValueMeta(new ValueMetaString("fragment"));
+        JsonOutputField field = new JsonOutputField();
+        field.setFieldName("fragment");
+        field.setElementName("fragment");
+        field.setJSONFragment(true);
+        ObjectMapper mapper = new ObjectMapper();
+        JsonRowWriter rowWriter = new JsonRowWriter(rowMeta, new int[] {0}, new JsonOutputField[] {field}, mapper);
+
+        JsonGenerator generator = mapper.getJsonFactory().createJsonGenerator(new StringWriter());
+        try {
+            rowWriter.write(generator, new Object[] {"{\"broken\":"});
+            fail("the fragment is not valid JSON");
+        } catch (KettleValueException e) {
+            Assert.assertTrue(e.getMessage().contains("fragment"));
+        }
+
+        // the step fails the same way whether it generates a tree or streams rows
+        for (boolean streamingGeneration : new boolean[] {false, true}) {
+            for (boolean jsonFragment : new boolean[] {false, true}) {
+                JsonOutputField stringField = new JsonOutputField();
+                stringField.setFieldName("Field1");
+                stringField.setElementName("fragment");
+                stringField.setJSONFragment(jsonFragment);
+                JsonOutputMeta settings = new JsonOutputMeta();
+                settings.setStreamingGeneration(streamingGeneration);
+                settings.setOutputFields(new JsonOutputField[] {stringField});
+                // "F11" is a valid string, not a valid fragment
+                Trans trans = runTransformation(settings, TestUtilities.createEmptyTempFile("testJsonOutput1_"));
+                Assert.assertEquals(jsonFragment ? 1 : 0, trans.getErrors());
+            }
+        }
+    }
+
     /* PDI-7243 */
     public void testNpeIsNotThrownOnNullInput() throws Exception {
         StepMockHelper<JsonOutputMeta, JsonOutputData> mockHelper =